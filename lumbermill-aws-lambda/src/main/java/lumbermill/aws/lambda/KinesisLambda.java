@@ -18,7 +18,9 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
 import lumbermill.api.BytesEvent;
+import lumbermill.api.Codec;
 import lumbermill.api.Codecs;
+import lumbermill.api.Event;
 import lumbermill.api.EventProcessor;
 import rx.Observable;
 
@@ -31,8 +33,23 @@ public abstract class KinesisLambda implements RequestHandler<KinesisEvent, Stri
 
     private EventProcessor eventProcessor;
 
+    /**
+     * Null when records are passed on as raw bytes with toBytes()
+     */
+    private final Codec<?> codec;
+
     public KinesisLambda(EventProcessor eventProcessor) {
         this.eventProcessor = eventProcessor;
+        this.codec = null;
+    }
+
+    /**
+     * Decodes each record with the specified codec, e.g. Codecs.SMILE if the producer
+     * wrote records in binary json.
+     */
+    public KinesisLambda(EventProcessor eventProcessor, Codec<?> codec) {
+        this.eventProcessor = eventProcessor;
+        this.codec = codec;
     }
 
     @Override
@@ -41,7 +58,7 @@ public abstract class KinesisLambda implements RequestHandler<KinesisEvent, Stri
             ((LambdaContextAwareEventProcessor)eventProcessor).initialize(context);
         }
         Observable.from(event.getRecords())
-                .map(this::toBytes)
+                .map(this::decode)
                 .compose(eventProcessor)
                 .count()
                 .doOnNext(cnt -> System.out.println("Total count: " + cnt))
@@ -50,6 +67,13 @@ public abstract class KinesisLambda implements RequestHandler<KinesisEvent, Stri
         return "Done";
     }
 
+    protected Event decode(KinesisEvent.KinesisEventRecord record) {
+        if (codec == null) {
+            return toBytes(record);
+        }
+        return codec.from(record.getKinesis().getData().array());
+    }
+
     protected BytesEvent toBytes(KinesisEvent.KinesisEventRecord record) {
         return Codecs.BYTES.from(record.getKinesis().getData().array());
     }
@@ -29,6 +29,7 @@ import rx.functions.Func1;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
  class S3<E extends Event> {
@@ -73,6 +74,53 @@ import java.util.Optional;
 
     }
 
+    /**
+     * Reads each line of an S3 object as an Event without downloading it to a local file,
+     * gzip compressed objects are decompressed while reading. Lines are read as they are
+     * requested downstream.
+     * <p>
+     * 'bucket' and 'key' are mandatory, 'codec', 'remove' and 'roleArn' are optional
+     *
+     * <pre>
+     * Groovy usage:
+     *  {@code
+     * observable.flatMap (
+     *     s3.lines (
+     *         bucket:  '{bucket_name}',
+     *         key:     '{key}',
+     *         codec:   Codecs.jsonObject(), // Optional, default is Codecs.textToJson()
+     *         remove:  true                 // Optional, removes the object when all lines are processed
+     *     )
+     * )
+     * }
+     * </pre>
+     */
+    public Func1<E, Observable<E>> lines(Map<String, Object> config) {
+
+        MapWrap conf = MapWrap.of(config).assertExists("bucket","key");
+        StringTemplate bucket   = conf.asStringTemplate("bucket");
+        StringTemplate key      = conf.asStringTemplate("key");
+        Codec<E> codec          = conf.get("codec", defaultRowCodec);
+        boolean removeFromS3    = conf.get("remove", false);
+
+        S3ClientImpl client = clientFactory.create(conf);
+
+        return event -> {
+            String sBucket = client.format(event, bucket);
+            String sKey = client.format(event, key);
+            return Observable.<E, Stream<String>>using(
+                    () -> client.lines(sBucket, sKey),
+                    lines -> Observable.from(lines::iterator).map(codec::from),
+                    Stream::close)
+                    // Only delete from S3 if successful
+                    .doOnCompleted(() -> {
+                        if (removeFromS3) {
+                            client.delete(sBucket, sKey);
+                        }
+                    });
+        };
+    }
+
     /**
      * Gets the complete S3Entity as a BytesEvent
      */
@@ -23,6 +23,7 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.kinesis.AmazonKinesisAsync;
 import com.amazonaws.services.kinesis.AmazonKinesisAsyncClient;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lumbermill.api.BinaryJsonCodec;
 import lumbermill.internal.MapWrap;
 
 import java.util.HashMap;
@@ -43,14 +44,18 @@ public class KinesisClientFactory {
      * Creates are retrieves an existing clients based on the parameters.
      */
     public synchronized SimpleRetryableKinesisClient getOrCreate(MapWrap parameters){
-        if (clients.containsKey(parameters.asString("stream"))) {
-            return clients.get(parameters.asString("stream"));
+        Optional<BinaryJsonCodec> codec = parameters.getIfExists("codec");
+        // Same stream might be written to with different codecs
+        String key = parameters.asString("stream") + codec.map(c -> "/" + c).orElse("");
+        if (clients.containsKey(key)) {
+            return clients.get(key);
         }
         SimpleRetryableKinesisClient simpleRetryableKinesisClient = new SimpleRetryableKinesisClient(getAsyncClient(parameters),
                 parameters.asString("stream"),
                 //TODO: Consider forcing user to specify partition key
-                parameters.get("partition_key", DEFAULT_PARTITION_KEY));
-        clients.put(parameters.asString("stream"), simpleRetryableKinesisClient);
+                parameters.get("partition_key", DEFAULT_PARTITION_KEY),
+                codec);
+        clients.put(key, simpleRetryableKinesisClient);
         return simpleRetryableKinesisClient;
     }
 
@@ -22,6 +22,7 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
 import lumbermill.api.Event;
 import lumbermill.internal.Streams;
 import lumbermill.internal.StringTemplate;
@@ -37,6 +38,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 /**
@@ -146,8 +148,8 @@ public class S3ClientImpl<T extends Event> {
         ByteString raw = event.raw();
         metadata.setContentLength(raw.size());
 
-        String sKey = key.format(event).get();
-        String sBucket = bucket.format(event).get();
+        String sKey = key.renderRequired(event);
+        String sBucket = bucket.renderRequired(event);
 
         LOGGER.trace("Uploading to s3://{}/{} with size {}", sBucket, sKey, metadata.getContentLength());
         s3Client.putObject(sBucket, sKey,
@@ -156,7 +158,22 @@ public class S3ClientImpl<T extends Event> {
 
 
     public ByteString getAsBytes(String bucket, String key) {
-        return Streams.read(get(bucket, key));
+        LOGGER.trace("Getting object s3://{}/{}", bucket, key);
+        try (S3Object object = s3Client.getObject(new GetObjectRequest(bucket, decode(key)))) {
+            return Streams.read(object.getObjectContent());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Streams the lines of an object without storing it locally, gzip compressed objects are
+     * decompressed while reading. The client MUST close the stream.
+     */
+    public Stream<String> lines(String bucket, String key) {
+        LOGGER.trace("Reading lines of s3://{}/{}", bucket, key);
+        S3Object object = s3Client.getObject(new GetObjectRequest(bucket, decode(key)));
+        return Streams.lines(object.getObjectContent());
     }
 
     public File get(String bucket,
@@ -170,18 +187,20 @@ public class S3ClientImpl<T extends Event> {
             throw new IllegalStateException(e);
         }
 
+        s3Client.getObject(new GetObjectRequest (
+                bucket, decode(key)), file);
+        return file;
+    }
+
+    private static String decode(String key) {
         try {
-            key = URLDecoder.decode(key, "UTF-8");
+            return URLDecoder.decode(key, "UTF-8");
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
-
-        s3Client.getObject(new GetObjectRequest (
-                bucket, key), file);
-        return file;
     }
 
     public String format(T event, StringTemplate template) {
-        return template.format(event).get();
+        return template.renderRequired(event);
     }
 }
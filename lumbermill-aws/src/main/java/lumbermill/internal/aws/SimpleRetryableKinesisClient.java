@@ -20,9 +20,12 @@ import com.amazonaws.services.kinesis.model.PutRecordsRequest;
 import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
 import com.amazonaws.services.kinesis.model.PutRecordsResult;
 import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import lumbermill.api.BinaryJsonCodec;
 import lumbermill.api.Event;
+import lumbermill.api.JsonEvent;
 import lumbermill.aws.FatalAWSException;
 import lumbermill.internal.StringTemplate;
+import okio.ByteString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
@@ -52,10 +55,17 @@ public class SimpleRetryableKinesisClient<T extends Event> {
 
     private final StringTemplate partitionKeyTemplate;
 
-    SimpleRetryableKinesisClient(AmazonKinesisAsync amazonKinesisClient, String stream, String partitionKey) {
+    /**
+     * If present, JsonEvents are written with this codec instead of as json text
+     */
+    private final Optional<BinaryJsonCodec> codec;
+
+    SimpleRetryableKinesisClient(AmazonKinesisAsync amazonKinesisClient, String stream, String partitionKey,
+                                 Optional<BinaryJsonCodec> codec) {
         this.amazonKinesisClient = amazonKinesisClient;
         this.stream = stream;
         this.partitionKeyTemplate = StringTemplate.compile(partitionKey);
+        this.codec = codec;
     }
 
     /**
@@ -63,8 +73,8 @@ public class SimpleRetryableKinesisClient<T extends Event> {
      * events and do putRecords instead.
      */
     public Observable<T> putRecord(T event) {
-        amazonKinesisClient.putRecord(stream, event.raw().asByteBuffer(),
-                partitionKeyTemplate.format(event).get());
+        amazonKinesisClient.putRecord(stream, data(event).asByteBuffer(),
+                partitionKeyTemplate.renderRequired(event));
         return Observable.just(event);
     }
 
@@ -123,11 +133,19 @@ public class SimpleRetryableKinesisClient<T extends Event> {
      * Converts event to actual kinesis entry type
      */
     private PutRecordsRequestEntry toRecordEntries(T event) {
-        Optional<String> partitionKey = partitionKeyTemplate.format(event);
+        String partitionKey = partitionKeyTemplate.render(event);
         return new PutRecordsRequestEntry().withData (
-                event.raw().asByteBuffer())
+                data(event).asByteBuffer())
                 // FIXME: If partitionkey does not return a value, what approach is best?
-                .withPartitionKey(partitionKey.isPresent() ? partitionKey.get() : UUID.randomUUID().toString());
+                .withPartitionKey(partitionKey != null ? partitionKey : UUID.randomUUID().toString());
+    }
+
+
+    private ByteString data(T event) {
+        if (codec.isPresent() && event instanceof JsonEvent) {
+            return codec.get().encode((JsonEvent) event);
+        }
+        return event.raw();
     }
 
 
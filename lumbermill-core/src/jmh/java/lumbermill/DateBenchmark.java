@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill;
+
+import lumbermill.api.JsonEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import rx.functions.Func1;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Core.date() where the matching format is the last of three, and ISO-8601 timestamps parsed
+ * with a pattern and with the ISO8601 format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateBenchmark {
+
+    private final Func1<JsonEvent, JsonEvent> thirdFormat = Core.date("time",
+            "yyyy-MM-dd'T'HH:mm:ssZ", "yyyy/MM/dd HH:mm:ss", "dd/MMM/yyyy:HH:mm:ss Z");
+
+    private final Func1<JsonEvent, JsonEvent> iso = Core.date("time", "yyyy-MM-dd'T'HH:mm:ss.SSSX");
+
+    private final Func1<JsonEvent, JsonEvent> iso8601 = Core.date("time", "ISO8601");
+
+    private long counter;
+
+    @Benchmark
+    public JsonEvent thirdFormat() {
+        return thirdFormat.call(new JsonEvent().put("time", "11/Mar/2016:13:15:" + seconds() + " +0100"));
+    }
+
+    @Benchmark
+    public JsonEvent iso() {
+        return iso.call(new JsonEvent().put("time", "2016-03-11T12:15:" + seconds() + ".451Z"));
+    }
+
+    @Benchmark
+    public JsonEvent iso8601() {
+        return iso8601.call(new JsonEvent().put("time", "2016-03-11T12:15:" + seconds() + ".451Z"));
+    }
+
+    /**
+     * Changes every 16 events
+     */
+    private String seconds() {
+        long second = (counter++ >> 4) % 50 + 10;
+        return Long.toString(second);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding via an intermediate String (previous Codecs implementation)
+ * with decoding the bytes directly.
+ *
+ * Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonDecodeBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ByteString json;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setup() {
+        json = ByteString.encodeUtf8("{\"@timestamp\":\"2016-03-11T13:55:51.847305Z\"," +
+                "\"message\":\"2016-03-11T13:55:51.847305Z prod-apig-LoadBala-W1C506EG6RQ4 " +
+                "216.137.32.245:43649 172.31.39.241:80 0.000044 1.212816 0.000041 400 400 145 25 " +
+                "\\\"POST https://platform.lifelog.sonymobile.com:443/oauth/2/refresh_token HTTP/1.1\\\"\"," +
+                "\"client_ip\":\"216.137.32.245\",\"client_port\":43649,\"elb_status_code\":400," +
+                "\"request_processing_time\":4.4E-5,\"tags\":[\"elb\",\"prod\"],\"type\":\"elb\"}");
+        jsonBytes = json.toByteArray();
+    }
+
+    /**
+     * ByteString caches the result of utf8() so decode explicitly, as a fresh event would.
+     */
+    @Benchmark
+    public JsonEvent viaString() throws IOException {
+        return new JsonEvent((ObjectNode) OBJECT_MAPPER.readTree(new String(jsonBytes, StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public JsonEvent fromByteString() {
+        return Codecs.JSON_OBJECT.from(json);
+    }
+
+    @Benchmark
+    public JsonEvent fromByteArray() {
+        return Codecs.JSON_OBJECT.from(jsonBytes);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of creating events, run with -prof gc and look at
+ * gc.alloc.rate.norm for bytes per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetaDataAllocationBenchmark {
+
+    private final ByteString bytes = ByteString.encodeUtf8("Hello there I am perhaps an unstructured access log");
+
+    @Benchmark
+    public Event bytesEvent() {
+        return new BytesEvent(bytes);
+    }
+
+    @Benchmark
+    public Event bytesEventWithMetaData() {
+        return new BytesEvent(bytes)
+                .put("key", "logs/2016/03/11/elb.log")
+                .put("bucket_name", "bucket");
+    }
+
+    @Benchmark
+    public Event bytesEventWithTag() {
+        return new BytesEvent(bytes).addTag("_grokparsefailure");
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Compression with pooled Deflaters/Inflaters compared to the previous implementation of
+ * Streams.zlibCompress, zlibDecompress, gzip(ByteString) and gunzip(ByteString), copied below,
+ * which created a new Deflater/Inflater and several intermediate arrays per event.
+ *
+ * Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+
+    /**
+     * Number of json events in each compressed payload
+     */
+    @Param({"1", "100"})
+    public int events;
+
+    private ByteString raw;
+    private ByteString zlib;
+    private ByteString gzip;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < events; i++) {
+            sb.append("{\"@timestamp\":\"2016-05-10T12:00:").append(i % 60).append(".123Z\",")
+              .append("\"message\":\"2016-05-10T12:00:00.123Z my-elb 10.0.0.").append(i % 255)
+              .append(":54321 10.0.1.12:80 0.000042 0.001 0.00003 200 200 0 1234 ")
+              .append("\\\"GET http://example.com:80/index.html HTTP/1.1\\\"\",")
+              .append("\"type\":\"elb\",\"tags\":[\"aws\",\"elb\"]}\n");
+        }
+        raw = ByteString.encodeUtf8(sb.toString());
+        zlib = Compression.zlib(raw, Compression.DEFAULT_LEVEL);
+        gzip = Compression.gzip(raw, Compression.DEFAULT_LEVEL);
+    }
+
+    @Benchmark
+    public ByteString zlibCompressPooled() {
+        return Compression.zlib(raw, Compression.DEFAULT_LEVEL);
+    }
+
+    @Benchmark
+    public byte[] zlibCompressPrevious() {
+        return previousZlibCompress(raw);
+    }
+
+    @Benchmark
+    public ByteString zlibDecompressPooled() {
+        return Compression.unzlib(zlib);
+    }
+
+    @Benchmark
+    public byte[] zlibDecompressPrevious() throws DataFormatException {
+        return previousZlibDecompress(zlib);
+    }
+
+    @Benchmark
+    public ByteString gzipCompressPooled() {
+        return Compression.gzip(raw, Compression.DEFAULT_LEVEL);
+    }
+
+    @Benchmark
+    public ByteString gzipCompressPrevious() throws IOException {
+        return previousGzip(raw);
+    }
+
+    @Benchmark
+    public ByteString gzipDecompressPooled() {
+        return Compression.gunzip(gzip);
+    }
+
+    @Benchmark
+    public ByteString gzipDecompressPrevious() throws IOException {
+        return previousGunzip(gzip);
+    }
+
+    private static byte[] previousZlibCompress(ByteString byteString) {
+        Deflater deflater = new Deflater();
+        byte[] data = byteString.toByteArray();
+        deflater.setInput(data);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+        deflater.finish();
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            outputStream.write(buffer, 0, count);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] previousZlibDecompress(ByteString bytes) throws DataFormatException {
+        byte[] data = bytes.toByteArray();
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+        byte[] buffer = new byte[4096];
+        while (!inflater.finished()) {
+            int count = inflater.inflate(buffer);
+            outputStream.write(buffer, 0, count);
+        }
+        inflater.end();
+        return outputStream.toByteArray();
+    }
+
+    private static ByteString previousGzip(ByteString bytes) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out);
+        Streams.copy(in, gzipOutputStream);
+        gzipOutputStream.close();
+        return ByteString.of(out.toByteArray());
+    }
+
+    private static ByteString previousGunzip(ByteString bytes) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Streams.copy(new GZIPInputStream(in), out);
+        return ByteString.of(out.toByteArray());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Compression of single ~300 byte json events, the typical size of events sent to Kinesis.
+ * The compression ratio of each format is printed when the benchmark is set up.
+ *
+ * Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompressionFormatsBenchmark {
+
+    @Param({"gzip", "zlib", "lz4", "lz4hc", "snappy", "zstd", "zstdDictionary"})
+    public String format;
+
+    private Function<ByteString, ByteString> compress;
+    private Function<ByteString, ByteString> decompress;
+
+    private ByteString[] events;
+    private ByteString[] compressed;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<ByteString> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(event(i));
+        }
+        ZstdCompression zstd;
+        switch (format) {
+            case "gzip":
+                compress = b -> Compression.gzip(b, Compression.DEFAULT_LEVEL);
+                decompress = Compression::gunzip;
+                break;
+            case "zlib":
+                compress = b -> Compression.zlib(b, Compression.DEFAULT_LEVEL);
+                decompress = Compression::unzlib;
+                break;
+            case "lz4":
+                compress = b -> Lz4Compression.compress(b, Lz4Compression.FAST);
+                decompress = Lz4Compression::decompress;
+                break;
+            case "lz4hc":
+                compress = b -> Lz4Compression.compress(b, 9);
+                decompress = Lz4Compression::decompress;
+                break;
+            case "snappy":
+                compress = SnappyCompression::compress;
+                decompress = SnappyCompression::decompress;
+                break;
+            case "zstd":
+                zstd = new ZstdCompression(ZstdCompression.DEFAULT_LEVEL, null);
+                compress = zstd::compress;
+                decompress = zstd::decompress;
+                break;
+            case "zstdDictionary":
+                // Trained on other events than the ones compressed
+                zstd = new ZstdCompression(ZstdCompression.DEFAULT_LEVEL, ZstdCompression.train(samples, 16 * 1024));
+                compress = zstd::compress;
+                decompress = zstd::decompress;
+                break;
+            default:
+                throw new IllegalArgumentException(format);
+        }
+        events = new ByteString[1024];
+        compressed = new ByteString[events.length];
+        long size = 0;
+        long compressedSize = 0;
+        for (int i = 0; i < events.length; i++) {
+            events[i] = event(100_000 + i);
+            compressed[i] = compress.apply(events[i]);
+            size += events[i].size();
+            compressedSize += compressed[i].size();
+        }
+        System.out.printf("%n%s: average event %d bytes, compressed %d bytes, ratio %.2f%n",
+                format, size / events.length, compressedSize / events.length, (double) size / compressedSize);
+    }
+
+    @Benchmark
+    public ByteString compress() {
+        return compress.apply(events[next++ & (events.length - 1)]);
+    }
+
+    @Benchmark
+    public ByteString decompress() {
+        return decompress.apply(compressed[next++ & (compressed.length - 1)]);
+    }
+
+    private static ByteString event(int i) {
+        return ByteString.encodeUtf8("{\"@timestamp\":\"2016-05-10T12:" + (i / 60 % 60) + ":" + (i % 60) + ".123Z\","
+                + "\"message\":\"my-elb 10.0." + (i % 7) + "." + (i % 255) + ":" + (40000 + i)
+                + " 10.0.1.12:80 0.000042 0.001 0.00003 200 200 0 " + (i * 31 % 5000)
+                + " \\\"GET http://example.com:80/items/" + i + "?page=" + (i % 13) + " HTTP/1.1\\\""
+                + " \\\"Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 Chrome/50.0." + (i % 3) + "\\\"\","
+                + "\"backend\":\"10.0.1." + (i % 16) + ":80\","
+                + "\"type\":\"elb\",\"tags\":[\"aws\",\"elb\"]}");
+    }
+}
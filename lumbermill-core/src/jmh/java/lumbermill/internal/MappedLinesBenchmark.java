@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.JsonEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import rx.Observable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a 64 MB file of ELB rows as JsonEvents, streaming on one thread compared to memory
+ * mapped chunks decoded with increasing parallelism. Scaling requires as many cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MappedLinesBenchmark {
+
+    private static final String ELB_ROW = "2016-03-11T13:55:51.847305Z prod-apig-LoadBala-W1C506EG6RQ4 " +
+            "216.137.32.245:43649 172.31.39.241:80 0.000044 1.212816 0.000041 400 400 145 25 " +
+            "\"POST https://platform.lifelog.sonymobile.com:443/oauth/2/refresh_token HTTP/1.1\" " +
+            "\"Apache-HttpClient/4.3.6 (java 1.5)\" ECDHE-RSA-AES128-SHA TLSv1";
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = Files.createTempFile("lumbermill", ".log");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long size = 0;
+            while (size < 64 * 1024 * 1024) {
+                writer.write(ELB_ROW);
+                writer.newLine();
+                size += ELB_ROW.length() + 1;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public int streaming() {
+        return Observable.using(() -> Streams.lines(file.toString()),
+                lines -> Observable.from(lines::iterator).map(Codecs.TEXT_TO_JSON::from),
+                lines -> lines.close())
+                .count().toBlocking().single();
+    }
+
+    @Benchmark
+    public int mappedOrdered() {
+        return MappedLines.<JsonEvent>lines(file.toString(), Codecs.TEXT_TO_JSON, parallelism, true,
+                MappedLines.DEFAULT_CHUNK_SIZE)
+                .count().toBlocking().single();
+    }
+
+    @Benchmark
+    public int mappedUnordered() {
+        return MappedLines.<JsonEvent>lines(file.toString(), Codecs.TEXT_TO_JSON, parallelism, false,
+                MappedLines.DEFAULT_CHUNK_SIZE)
+                .count().toBlocking().single();
+    }
+}
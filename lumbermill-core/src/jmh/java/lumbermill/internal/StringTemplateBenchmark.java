@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.JsonEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats the Kinesis partition key and S3 key templates used in our pipelines.
+ *
+ * Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringTemplateBenchmark {
+
+    private final StringTemplate partitionKey = StringTemplate.compile("{client_ip}");
+    private final StringTemplate s3Key = StringTemplate.compile("logs/{type}/{environment}/{client_ip}-{request_id}.json");
+
+    private JsonEvent event;
+
+    @Setup
+    public void setup() {
+        event = Codecs.JSON_OBJECT.from("{\"@timestamp\":\"2016-03-11T13:55:51.847305Z\"," +
+                "\"client_ip\":\"216.137.32.245\",\"type\":\"elb\",\"environment\":\"prod\"," +
+                "\"request_id\":\"c5b8a2f6-1d4e-4b8e-9a0e-5f3c2d1e0b7a\",\"elb_status_code\":400}");
+    }
+
+    @Benchmark
+    public Optional<String> partitionKey() {
+        return partitionKey.format(event);
+    }
+
+    @Benchmark
+    public String partitionKeyRender() {
+        return partitionKey.render(event);
+    }
+
+    @Benchmark
+    public Optional<String> s3Key() {
+        return s3Key.format(event);
+    }
+
+    @Benchmark
+    public String s3KeyRender() {
+        return s3Key.render(event);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TimestampRenderer compared to formatting a ZonedDateTime with ISO_OFFSET_DATE_TIME, which is
+ * how timestampNow(), timestampFromMs() and TEXT_TO_JSON rendered @timestamp before.
+ *
+ * Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimestampRendererBenchmark {
+
+    private final TimestampRenderer renderer = TimestampRenderer.systemDefault();
+
+    private long millis = Instant.parse("2016-03-11T12:15:11Z").toEpochMilli();
+
+    @Benchmark
+    public String nowIsoOffset() {
+        return ZonedDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    @Benchmark
+    public String nowRenderer() {
+        return renderer.now();
+    }
+
+    /**
+     * Previous timestampFromMs(), the field value was read as a string
+     */
+    @Benchmark
+    public String fromMsIsoOffset() {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(Long.toString(millis++))),
+                ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    @Benchmark
+    public String fromMsRenderer() {
+        return renderer.format(millis++);
+    }
+}
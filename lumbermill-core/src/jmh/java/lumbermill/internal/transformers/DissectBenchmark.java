@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.JsonEvent;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dissect with the bundled %{AWS_ELB_LOG} grok pattern on the same ELB row.
+ *
+ * Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DissectBenchmark {
+
+    private static final String ELB_PATTERN = "%{timestamp} %{loadbalancer} %{client_ip}:%{client_port:int} " +
+            "%{backend_ip}:%{backend_port:int} %{request_processing_time:float} %{backend_processing_time:float} " +
+            "%{response_processing_time:float} %{elb_status_code:int} %{backend_status_code:int} " +
+            "%{received_bytes:int} %{sent_bytes:int} \"%{verb} %{request} HTTP/%{httpversion}\" " +
+            "\"%{useragent}\" %{ssl_cipher} %{ssl_protocol}";
+
+    private final Dissect dissect = new Dissect("message", ELB_PATTERN, true, Dissect.ERROR_TAG);
+
+    private final Grok<JsonEvent> grok = GrokFactory.create("message", "%{AWS_ELB_LOG}");
+
+    @Benchmark
+    public JsonEvent dissect() {
+        return dissect.call(Codecs.TEXT_TO_JSON.from(GrokParseBenchmark.ELB_ROW));
+    }
+
+    @Benchmark
+    public JsonEvent grok() {
+        return grok.parse(Codecs.TEXT_TO_JSON.from(GrokParseBenchmark.ELB_ROW)).toBlocking().single();
+    }
+}
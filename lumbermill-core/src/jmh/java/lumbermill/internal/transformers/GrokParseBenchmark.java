@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.JsonEvent;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses an ELB access log row and a row of another format with %{AWS_ELB_LOG}.
+ *
+ * Run with -prof gc to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GrokParseBenchmark {
+
+    static final ByteString ELB_ROW = ByteString.encodeUtf8("2016-03-11T13:55:51.847305Z " +
+            "prod-apig-LoadBala-W1C506EG6RQ4 216.137.32.245:43649 172.31.39.241:80 0.000044 1.212816 0.000041 " +
+            "400 400 145 25 \"POST https://platform.lifelog.sonymobile.com:443/oauth/2/refresh_token HTTP/1.1\" " +
+            "\"Apache-HttpClient/4.3.6 (java 1.5)\" ECDHE-RSA-AES128-SHA TLSv1");
+
+    static final ByteString SYSLOG_ROW = ByteString.encodeUtf8("Mar 11 13:55:51 ip-172-31-39-241 sshd[2163]: " +
+            "Accepted publickey for ec2-user from 216.137.32.245 port 43649 ssh2: RSA 7c:1f:2a:3b:4c:5d:6e:7f");
+
+    private final Grok<JsonEvent> grok = GrokFactory.create("message", "%{AWS_ELB_LOG}");
+
+    @Benchmark
+    public JsonEvent elb() {
+        return grok.parse(Codecs.TEXT_TO_JSON.from(ELB_ROW)).toBlocking().single();
+    }
+
+    /**
+     * A row of another format, rejected by the literal prefilter
+     */
+    @Benchmark
+    public JsonEvent elbMiss() {
+        return grok.parse(Codecs.TEXT_TO_JSON.from(SYSLOG_ROW)).toBlocking().single();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill;
+
+import lumbermill.api.Event;
+import lumbermill.internal.MapWrap;
+import lumbermill.internal.StringTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.io.File;
+
+/**
+ * File variants of compress and decompress, the result is written to a temporary file whose
+ * path is added to the event. The temporary file is deleted when the pipeline terminates.
+ */
+class CompressedFiles {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressedFiles.class);
+
+    static <T extends Event> Func1<T, Observable<T>> transform(MapWrap parameters, String defaultOutputField,
+                                                              Func1<File, File> transformer) {
+        parameters.assertExists("file");
+        final StringTemplate template = parameters.asStringTemplate("file");
+        final String outputField = parameters.get("output_field", defaultOutputField);
+
+        return event -> {
+            File result = transformer.call(new File(template.format(event).get()));
+            event.put(outputField, result.getPath());
+            return Observable.just(event)
+                    .doOnTerminate(() -> {
+                        boolean deleted = result.delete();
+                        LOGGER.debug("Deleted file {} successfully ? {}", result, deleted);
+                    });
+        };
+    }
+}
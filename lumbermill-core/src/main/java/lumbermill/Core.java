@@ -14,14 +14,23 @@
  */
 package lumbermill;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import lumbermill.api.AnyJsonEvent;
+import lumbermill.api.BinaryJsonCodec;
+import lumbermill.api.BytesEvent;
+import lumbermill.api.Codec;
 import lumbermill.api.Codecs;
 import lumbermill.api.Event;
+import lumbermill.api.FieldPath;
 import lumbermill.api.JsonEvent;
+import lumbermill.internal.DateParser;
+import lumbermill.internal.Json;
 import lumbermill.internal.MapWrap;
 import lumbermill.internal.RetryStrategyImpl;
-import lumbermill.internal.StringTemplate;
+import lumbermill.internal.TimestampRenderer;
 import lumbermill.internal.transformers.ConditionalFunc1;
+import lumbermill.internal.transformers.Dissect;
+import lumbermill.internal.transformers.Router;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,14 +38,14 @@ import rx.Observable;
 import rx.Subscriber;
 import rx.functions.Func1;
 
-import java.time.Instant;
-import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
@@ -57,6 +66,9 @@ public class Core {
     public static Grok grok = new Grok();
     public static GZip gzip = new GZip();
     public static Zlib zlib = new Zlib();
+    public static Lz4 lz4 = new Lz4();
+    public static Zstd zstd = new Zstd();
+    public static Snappy snappy = new Snappy();
     public static Base64 base64 = new Base64();
     public static File file = new File();
 
@@ -68,6 +80,16 @@ public class Core {
         return e -> e.each();
     }
 
+    /**
+     * Splits newline delimited json or a json array of objects into one JsonEvent per object.
+     * Unlike json() followed by splitIfArray() the contents are parsed one object at a time
+     * as they are emitted, so large payloads are never decoded as a single tree.
+     */
+    public static <E extends Event> Func1<E, Observable<JsonEvent>> splitJson() {
+        return e -> Observable.from(Json.eachObject(e.raw()))
+                .map(JsonEvent::new);
+    }
+
 
     /**
      * Converts from a List into single Events
@@ -150,6 +172,30 @@ public class Core {
 
 
 
+    /**
+     * Splits a field into fields using the literal delimiters in the pattern, a faster
+     * alternative to grok for strictly positional formats.
+     *
+     * <pre>
+     * Groovy usage:
+     *  {@code
+     * dissect (
+     *     field : 'message',
+     *     pattern : '%{timestamp} %{elb} %{client_ip}:%{client_port:int} %{rest}',
+     *     tagOnFailure : true      // Optional, adds _dissectfailure if the pattern does not match
+     * )
+     * }
+     * </pre>
+     * @see Dissect
+     */
+    public static Func1<JsonEvent, JsonEvent> dissect(Map conf) {
+        MapWrap config = MapWrap.of(conf).assertExists("field", "pattern");
+        return new Dissect(config.asString("field"),
+                config.asString("pattern"),
+                config.get("tagOnFailure", true),
+                config.get("tag", Dissect.ERROR_TAG));
+    }
+
     public static ConditionalFunc1 ifExists(String field) {
         return new ConditionalFunc1(event -> event.has(field));
     }
@@ -159,18 +205,40 @@ public class Core {
     }
 
     public static ConditionalFunc1 ifMatch(String field, String value) {
-        final StringTemplate template = StringTemplate.compile(value);
+        final Pattern pattern = Pattern.compile(value);
 
         return new ConditionalFunc1(event -> {
                 if (event.has(field)) {
-                    return event.valueAsString(field).matches(value);
+                    return pattern.matcher(event.valueAsString(field)).matches();
                 }
                 return false;
         });
     }
 
+    /**
+     * Routes each event to the function of the first matching rule, all rules are evaluated
+     * in a single pass instead of one ifMatch/ifExists stage per rule.
+     * @see Router
+     */
+    public static <E extends Event> Router<E> route() {
+        return new Router<>(false);
+    }
+
+    /**
+     * Same as route() but applies the functions of all matching rules, in rule order.
+     */
+    public static <E extends Event> Router<E> routeAll() {
+        return new Router<>(true);
+    }
+
+    /**
+     * Removes the fields, nested fields are specified as [a][b]
+     */
     public static Func1<JsonEvent, JsonEvent> remove(String... field) {
-        return jsonEvent -> jsonEvent.remove(field);
+        final FieldPath[] paths = asList(field).stream()
+                .map(FieldPath::compile)
+                .toArray(FieldPath[]::new);
+        return jsonEvent -> jsonEvent.remove(paths);
     }
 
     public static Func1<JsonEvent, JsonEvent> rename(Map map) {
@@ -183,7 +251,9 @@ public class Core {
         return rename(config.asString("from"), config.asString("to"), true);
     }
 
-    private static <E extends Event> Func1<JsonEvent,JsonEvent> rename(String fromField, String toField, boolean copy) {
+    private static <E extends Event> Func1<JsonEvent,JsonEvent> rename(String from, String to, boolean copy) {
+        final FieldPath fromField = FieldPath.compile(from);
+        final FieldPath toField = FieldPath.compile(to);
         return event -> {
             String value = event.valueAsString(fromField);
             if(value != null) {
@@ -197,8 +267,8 @@ public class Core {
     }
 
     public static Func1<JsonEvent,JsonEvent> timestampNow() {
-        return jsonEvent -> jsonEvent.put("@timestamp", ZonedDateTime.now()
-                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        TimestampRenderer renderer = TimestampRenderer.systemDefault();
+        return jsonEvent -> jsonEvent.put("@timestamp", renderer.now());
     }
 
     public static Func1<JsonEvent,JsonEvent> timestampFromMs(String from) {
@@ -209,48 +279,48 @@ public class Core {
         return timestampFromMs("@timestamp", "@timestamp");
     }
 
+    /**
+     * Numeric fields are read directly from the json node, text is parsed.
+     */
     public static Func1<JsonEvent,JsonEvent> timestampFromMs(String from, String to) {
+        TimestampRenderer renderer = TimestampRenderer.systemDefault();
+        FieldPath fromField = FieldPath.compile(from);
         return e -> {
-            if (! e.has(from)) {
+            if (! e.has(fromField)) {
                 return e;
             }
-            String format = ZonedDateTime.ofInstant(
-                    Instant.ofEpochMilli(Long.parseLong(e.valueAsString(from))),
-                    ZoneId.systemDefault())
-                    .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-            return e.put (to,
-                    format);
+            JsonNode node = e.find(fromField);
+            long millis = node != null && node.isIntegralNumber() ?
+                    node.longValue() : Long.parseLong(e.valueAsString(fromField));
+            return e.put (to, renderer.format(millis));
         };
     }
 
     /**
-     * FIXME - make sure this works properly
+     * Parses the field with the first matching format and stores it as @timestamp, the field
+     * is removed. Formats are DateTimeFormatter patterns or ISO8601, UNIX (epoch seconds) and
+     * UNIX_MS (epoch milliseconds). Values without zone are in UTC.
      *
+     * Fails if the value matches none of the formats.
+     * @see DateParser
      */
     public static Func1<JsonEvent, JsonEvent> date(String field, String... formats) {
 
-        final List<DateTimeFormatter> formatters =
-                asList(formats).stream()
-                        .map(format -> DateTimeFormatter.ofPattern(format).withZone(ZoneId.of("UTC")))
-                        .collect(toList());
+        final DateParser parser = DateParser.of(formats);
+        final TimestampRenderer renderer = new TimestampRenderer(ZoneOffset.UTC);
 
         return jsonEvent -> {
             String dateString = jsonEvent.valueAsString(field);
-            for (DateTimeFormatter formatter: formatters) {
-                try {
-                    ZonedDateTime date = ZonedDateTime.parse(dateString, formatter);
-                    String isoDate = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(date);
-                    jsonEvent.putMetaData("_@date", date);
-                    jsonEvent.remove(field);
-                    return jsonEvent.put("@timestamp", isoDate);
-                } catch (RuntimeException e) {
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Failed to parse date {}", e.getMessage());
-                    }
-                    continue;
+            ZonedDateTime date = parser.parse(dateString);
+            if (date == null) {
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Failed to parse date {}", dateString);
                 }
+                throw new IllegalStateException("Failed to parse date with any of the supplied formats");
             }
-            throw new IllegalStateException("Failed to parse date with any of the supplied formats");
+            jsonEvent.putMetaData("_@date", date);
+            jsonEvent.remove(field);
+            return jsonEvent.put("@timestamp", renderer.format(date));
         };
     }
 
@@ -339,6 +409,30 @@ public class Core {
         return e -> Codecs.JSON_OBJECT.from(e.raw());
     }
 
+    /**
+     * Same as toJsonObject() but the json is not parsed until a field is accessed.
+     * Use this when only a few fields are read before the event is sent unmodified,
+     * raw() then returns the original bytes without re-serializing them.
+     */
+    public static <E extends Event> Func1<E, JsonEvent> toLazyJsonObject() {
+        return e -> Codecs.LAZY_JSON_OBJECT.from(e.raw());
+    }
+
+    /**
+     * Decodes the event with any codec, e.g. Codecs.SMILE for events written with encode().
+     */
+    public static <E extends Event, T extends Event> Func1<E, T> decode(Codec<T> codec) {
+        return e -> codec.from(e.raw());
+    }
+
+    /**
+     * Encodes the event with a binary json codec (Codecs.SMILE or Codecs.CBOR) into a BytesEvent.
+     * Note that metadata is not kept.
+     */
+    public static Func1<JsonEvent, BytesEvent> encode(BinaryJsonCodec codec) {
+        return e -> Codecs.BYTES.from(codec.encode(e));
+    }
+
     /**
      * Logstash default decoding, takes that value and simply puts that under the message field. A @timestamp is also
      * added with current time.
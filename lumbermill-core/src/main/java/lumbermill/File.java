@@ -18,7 +18,9 @@ import lumbermill.api.Codec;
 import lumbermill.api.Codecs;
 import lumbermill.api.Event;
 import lumbermill.api.JsonEvent;
+import lumbermill.internal.FileTail;
 import lumbermill.internal.MapWrap;
+import lumbermill.internal.MappedLines;
 import lumbermill.internal.Streams;
 import lumbermill.internal.StringTemplate;
 import org.slf4j.Logger;
@@ -27,11 +29,7 @@ import rx.Observable;
 import rx.functions.Action1;
 import rx.functions.Func1;
 
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toList;
 
 
 public class File {
@@ -42,10 +40,21 @@ public class File {
 
     /**
      * Reads each line of the file as an Event, specify codec to decide how to parse each line.
+     * Lines are read and decoded as they are requested downstream, so memory usage does not
+     * depend on the size of the file. The file is closed when completed or unsubscribed.
+     * Lines are read as UTF-8, gzip compressed files are detected and decompressed while
+     * reading so nothing is written to disk.
+     *
+     * Large local files can be read in parallel, the file is then memory mapped and split into
+     * chunks that are decoded on all cores. Gzip files can not be split and are always read
+     * sequentially.
      * <pre> {@code flatMap (
      *     file (
      *         file : '/path/to/file.txt', // Supports templating '{path}'
      *         codec : Codecs.jsonObject() // Optional, default is Codecs.textToJson()
+     *         parallel : true,            // Optional, default is false
+     *         ordered : false,            // Optional when parallel, default is true (keep order of lines)
+     *         parallelism : 4             // Optional when parallel, default is number of cores
      * ))}</pre>
      */
     public <E extends Event> Func1<JsonEvent, Observable<E>> lines(Map map) {
@@ -53,23 +62,68 @@ public class File {
         MapWrap config = MapWrap.of(map).assertExists("file");
         StringTemplate fileTemplate = config.asStringTemplate("file");
         Codec<E> codec = config.get("codec", (Codec<E>)Codecs.TEXT_TO_JSON);
+        boolean parallel = config.get("parallel", false);
+        boolean ordered = config.get("ordered", true);
+        int parallelism = config.exists("parallelism") ?
+                config.asInt("parallelism") : Runtime.getRuntime().availableProcessors();
+        int chunkSize = config.exists("chunkSize") ? config.asInt("chunkSize") : MappedLines.DEFAULT_CHUNK_SIZE;
 
         return event -> {
             String file = fileTemplate.format(event).get();
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Reading each line of file {} with codec {}", file, codec);
             }
-            try (Stream<String> lines = Streams.lines(file)) {
-                List<E> allLines = lines.map(line -> codec.from(line))
-                        .collect(toList());
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Finished reading file {} with {} lines", file, allLines.size());
-                }
-                return Observable.from(allLines);
+            if (parallel && !Streams.isGzip(file)) {
+                return MappedLines.lines(file, codec, parallelism, ordered, chunkSize);
             }
+            return Observable.using(
+                    () -> Streams.lines(file),
+                    lines -> Observable.from(lines::iterator).map(codec::from),
+                    lines -> {
+                        lines.close();
+                        LOGGER.debug("Closed file {}", file);
+                    });
         };
     }
 
+    /**
+     * Follows files and emits lines as they are appended, like tail -F. Offsets are stored in
+     * a sincedb file when the pipeline has completed a batch of lines, so lines are not read
+     * again after a restart. Rotated and truncated files are detected, all files are read by
+     * a single thread.
+     * <pre> {@code
+     * file.tail (
+     *     path : '/var/log/app/*.log',           // File or glob in the last path segment
+     *     sincedb : '/var/lib/lumbermill/app.db', // Optional, default is ~/.lumbermill-sincedb-<hash of path>
+     *     codec : Codecs.jsonObject(),            // Optional, default is Codecs.textToJson()
+     *     startPosition : 'beginning',            // Optional, 'end' (default) or 'beginning' for existing files
+     *     interval : 1000,                        // Optional, ms between polls, default is 1000
+     *     batchSize : 1000                        // Optional, max lines per batch, default is 1000
+     * ).on { batch ->
+     *     batch.map(addField('type', 'app'))
+     *          .buffer(500)
+     *          .flatMap(elasticsearch.client(...))
+     * }}</pre>
+     */
+    public <E extends Event> FileTail<E> tail(Map map) {
+        MapWrap config = MapWrap.of(map).assertExists("path");
+        String startPosition = config.get("startPosition", "end");
+        if (!startPosition.equals("end") && !startPosition.equals("beginning")) {
+            throw new IllegalArgumentException("startPosition must be 'end' or 'beginning', was " + startPosition);
+        }
+        String path = config.asString("path");
+        // One sincedb per path by default so that several tails do not overwrite each others offsets
+        String defaultSinceDb = System.getProperty("user.home") + java.io.File.separator
+                + ".lumbermill-sincedb-" + Integer.toHexString(path.hashCode());
+        return new FileTail<>(
+                path,
+                config.get("sincedb", defaultSinceDb),
+                config.get("codec", (Codec<E>) Codecs.TEXT_TO_JSON),
+                config.exists("interval") ? config.asLong("interval") : 1000,
+                startPosition.equals("beginning"),
+                config.exists("batchSize") ? config.asInt("batchSize") : 1000);
+    }
+
     public <E extends Event> Observable<E> readFileAsLines(Map map) {
         return Observable.just(Codecs.TEXT_TO_JSON.from("{}")).flatMap(lines(map));
     }
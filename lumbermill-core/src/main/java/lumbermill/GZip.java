@@ -16,15 +16,14 @@ package lumbermill;
 
 import lumbermill.api.Codecs;
 import lumbermill.api.Event;
+import lumbermill.internal.Compression;
 import lumbermill.internal.MapWrap;
 import lumbermill.internal.Streams;
-import lumbermill.internal.StringTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 import rx.functions.Func1;
 
-import java.io.File;
 import java.util.Map;
 
 /**
@@ -37,54 +36,45 @@ class GZip {
     private final static String DEFAULT_COMPRESS_OUTPUT_FIELD = "gzip_path_compressed";
     private final static String DEFAULT_DECOMPRESS_OUTPUT_FIELD = "gzip_path_decompressed";
 
+    /**
+     * Compresses the file to a temporary file that is deleted when the pipeline terminates,
+     * 'level' is optional (0-9, default -1).
+     */
     public  <T extends Event>Func1<T,Observable<T>> compress(Map map) {
-
-        MapWrap parameters = MapWrap.of(map)
-                .assertExists("file");
-        final StringTemplate template = parameters.asStringTemplate("file");
-        final String outputField = parameters.get("output_field", DEFAULT_COMPRESS_OUTPUT_FIELD);
-
-        return event -> {
-            File compressed = Streams.gzip(new File(template.format(event).get()));
-            event.put(outputField, compressed.getPath());
-            return  Observable.just(event)
-                    .doOnTerminate(() -> {
-                        boolean deleted = compressed.delete();
-                        LOGGER.debug("Deleted file {} successfully ? {}", compressed, deleted);
-                    });
-        };
+        MapWrap parameters = MapWrap.of(map);
+        int level = Compression.level(parameters.get("level", Compression.DEFAULT_LEVEL));
+        return CompressedFiles.transform(parameters, DEFAULT_COMPRESS_OUTPUT_FIELD,
+                file -> Streams.gzip(file, level));
     }
 
+    /**
+     * Decompresses the file to a temporary file that is deleted when the pipeline terminates.
+     * To read the lines of a gzip file use file.lines() directly, it decompresses while reading.
+     */
     public  <T extends Event>Func1<T,Observable<T>> decompress(Map map) {
-
-        MapWrap parameters = MapWrap.of(map)
-                .assertExists("file");
-        final StringTemplate template = parameters.asStringTemplate("file");
-        final String outputField = parameters.get("output_field", DEFAULT_DECOMPRESS_OUTPUT_FIELD);
-
-        return event -> {
-            File decompressed = Streams.gunzip(new File(template.format(event).get()));
-            event.put(outputField, decompressed.getPath());
-            return  Observable.just(event)
-                    .doOnTerminate(() -> {
-                        boolean deleted = decompressed.delete();
-                        LOGGER.debug("Deleted file {} successfully ? {}", decompressed, deleted);
-                    });
-        };
+        return CompressedFiles.transform(MapWrap.of(map), DEFAULT_DECOMPRESS_OUTPUT_FIELD, Streams::gunzip);
     }
 
 
     public  <T extends Event>Func1<T,T> compress() {
+        return compress(Compression.DEFAULT_LEVEL);
+    }
+
+    /**
+     * Compresses with level 0 (none) to 9 (best), -1 is default
+     */
+    public  <T extends Event>Func1<T,T> compress(int level) {
+        Compression.level(level);
         return t -> {
             LOGGER.debug("Compressing event");
-            return  (T) Codecs.BYTES.from(Streams.gzip(t.raw()));
+            return  (T) Codecs.BYTES.from(Compression.gzip(t.raw(), level));
         };
     }
 
     public  <T extends Event>Func1<T,T> decompress() {
         return t -> {
             LOGGER.debug("decompressing event");
-            return (T) Codecs.BYTES.from(Streams.gunzip(t.raw()));
+            return (T) Codecs.BYTES.from(Compression.gunzip(t.raw()));
         };
     }
 }
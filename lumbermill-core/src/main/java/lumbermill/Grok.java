@@ -7,9 +7,12 @@ import lumbermill.internal.transformers.GrokFactory;
 import rx.Observable;
 import rx.functions.Func1;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import static java.util.stream.Collectors.toList;
+
 class Grok<E extends Event> {
 
     /**
@@ -20,26 +23,41 @@ class Grok<E extends Event> {
      * parse (
      *     field : 'message',
      *     pattern : 'AWS_ELB_LOG',
-     *     tagOnFailure : false
+     *     tagOnFailure : false,
+     *     patterns : [MY_ID : '[a-z]{8}']   // Optional custom pattern definitions
+     * )
+     *
+     * // Several patterns, the first one that matches is used
+     * parse (
+     *     field : 'message',
+     *     pattern : ['%{AWS_ELB_LOG}', '%{SYSLOGLINE}', '%{COMBINEDAPACHELOG}'],
+     *     reorder : true,   // Optional, try the most frequently matching pattern first
+     *     timeout : 100     // Optional, ms to spend on each event before tagging it _groktimeout
      * )
      * }</pre>
      */
     public Func1<JsonEvent,Observable<JsonEvent>> parse (Map conf) {
-        MapWrap mapWrap = MapWrap.of(conf).assertExists("field", "pattern");
-        lumbermill.internal.transformers.Grok grok = GrokFactory.create(mapWrap.asString("field"),
-                mapWrap.asString("pattern"),
-                mapWrap.get("tagOnFailure", true),
-                mapWrap.get("tag", GrokFactory.ERROR_TAG));
-
+        lumbermill.internal.transformers.Grok grok = create(conf);
         return t -> grok.parse(t);
     }
 
     public Func1<List<E>, Observable<List<E>>> parseBuffer(Map parameters) {
-        MapWrap mapWrap = MapWrap.of(parameters).assertExists("field", "pattern");
-        lumbermill.internal.transformers.Grok grok = GrokFactory.create(mapWrap.asString("field"),
-                mapWrap.asString("pattern"),
-                mapWrap.get("tagOnFailure", true),
-                mapWrap.get("tag", GrokFactory.ERROR_TAG));
+        lumbermill.internal.transformers.Grok grok = create(parameters);
         return events -> grok.parse(events);
     }
+
+    private static lumbermill.internal.transformers.Grok create(Map conf) {
+        MapWrap mapWrap = MapWrap.of(conf).assertExists("field", "pattern");
+        Object pattern = mapWrap.get("pattern");
+        List<String> patterns = pattern instanceof List ?
+                ((List<?>) pattern).stream().map(String::valueOf).collect(toList()) :
+                Collections.singletonList(String.valueOf(pattern));
+        return GrokFactory.create(mapWrap.asString("field"),
+                patterns,
+                mapWrap.get("patterns", Collections.emptyMap()),
+                mapWrap.get("tagOnFailure", true),
+                mapWrap.get("tag", GrokFactory.ERROR_TAG),
+                mapWrap.get("reorder", false),
+                mapWrap.exists("timeout") ? mapWrap.asLong("timeout") : 0);
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.Event;
+import lumbermill.internal.Lz4Compression;
+import lumbermill.internal.MapWrap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.util.Map;
+
+/**
+ * LZ4 compression, accessible from Core.lz4. The fastest of the compression formats, useful
+ * for internal hops where cpu matters more than size.
+ *
+ * <pre>
+ * Groovy usage:
+ *  {@code
+ * .map(lz4.compress())             // Fast compressor
+ * .map(lz4.compress(9))            // High compression, level 1-17
+ * .map(lz4.decompress())
+ *
+ * .flatMap(lz4.compress(file: '{path}', level: 9, output_field: 'lz4_path_compressed'))
+ * .flatMap(s3.put(bucket: 'archive', key: '{key}.lz4', file: '{lz4_path_compressed}'))
+ * }
+ * </pre>
+ */
+class Lz4 {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Lz4.class);
+
+    private final static String DEFAULT_COMPRESS_OUTPUT_FIELD = "lz4_path_compressed";
+    private final static String DEFAULT_DECOMPRESS_OUTPUT_FIELD = "lz4_path_decompressed";
+
+    public  <T extends Event>Func1<T,T> compress() {
+        return compress(Lz4Compression.FAST);
+    }
+
+    /**
+     * Level 0 is the fast compressor, 1-17 the high compression compressor
+     */
+    public  <T extends Event>Func1<T,T> compress(int level) {
+        Lz4Compression.level(level);
+        return t -> {
+            LOGGER.trace("Compressing event");
+            return  (T) Codecs.BYTES.from(Lz4Compression.compress(t.raw(), level));
+        };
+    }
+
+    public  <T extends Event>Func1<T,T> decompress() {
+        return t -> {
+            LOGGER.trace("Decompressing event");
+            return (T) Codecs.BYTES.from(Lz4Compression.decompress(t.raw()));
+        };
+    }
+
+    /**
+     * Compresses the file in the lz4-java block stream format, 'level' is optional
+     */
+    public  <T extends Event>Func1<T,Observable<T>> compress(Map map) {
+        MapWrap parameters = MapWrap.of(map);
+        int level = Lz4Compression.level(parameters.get("level", Lz4Compression.FAST));
+        return CompressedFiles.transform(parameters, DEFAULT_COMPRESS_OUTPUT_FIELD,
+                file -> Lz4Compression.compress(file, level));
+    }
+
+    public  <T extends Event>Func1<T,Observable<T>> decompress(Map map) {
+        return CompressedFiles.transform(MapWrap.of(map), DEFAULT_DECOMPRESS_OUTPUT_FIELD,
+                Lz4Compression::decompress);
+    }
+}
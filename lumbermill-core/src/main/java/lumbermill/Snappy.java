@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.Event;
+import lumbermill.internal.MapWrap;
+import lumbermill.internal.SnappyCompression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.util.Map;
+
+/**
+ * Snappy compression, accessible from Core.snappy. Pure java, for consumers that only
+ * support snappy.
+ *
+ * <pre>
+ * Groovy usage:
+ *  {@code
+ * .map(snappy.compress())
+ * .map(snappy.decompress())
+ *
+ * .flatMap(snappy.compress(file: '{path}', output_field: 'snappy_path_compressed'))
+ * }
+ * </pre>
+ */
+class Snappy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Snappy.class);
+
+    private final static String DEFAULT_COMPRESS_OUTPUT_FIELD = "snappy_path_compressed";
+    private final static String DEFAULT_DECOMPRESS_OUTPUT_FIELD = "snappy_path_decompressed";
+
+    public  <T extends Event>Func1<T,T> compress() {
+        return t -> {
+            LOGGER.trace("Compressing event");
+            return  (T) Codecs.BYTES.from(SnappyCompression.compress(t.raw()));
+        };
+    }
+
+    public  <T extends Event>Func1<T,T> decompress() {
+        return t -> {
+            LOGGER.trace("Decompressing event");
+            return (T) Codecs.BYTES.from(SnappyCompression.decompress(t.raw()));
+        };
+    }
+
+    /**
+     * Compresses the file in the snappy framing format
+     */
+    public  <T extends Event>Func1<T,Observable<T>> compress(Map map) {
+        return CompressedFiles.transform(MapWrap.of(map), DEFAULT_COMPRESS_OUTPUT_FIELD,
+                SnappyCompression::compress);
+    }
+
+    public  <T extends Event>Func1<T,Observable<T>> decompress(Map map) {
+        return CompressedFiles.transform(MapWrap.of(map), DEFAULT_DECOMPRESS_OUTPUT_FIELD,
+                SnappyCompression::decompress);
+    }
+}
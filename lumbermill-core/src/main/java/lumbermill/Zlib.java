@@ -16,26 +16,37 @@ package lumbermill;
 
 import lumbermill.api.Codecs;
 import lumbermill.api.Event;
-import lumbermill.internal.Streams;
+import lumbermill.internal.Compression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.functions.Func1;
 
+/**
+ * Zlib compression of events, accessible from Core.zlib
+ */
 class Zlib {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Zlib.class);
 
     public  <T extends Event>Func1<T,T> compress() {
+        return compress(Compression.DEFAULT_LEVEL);
+    }
+
+    /**
+     * Compresses with level 0 (none) to 9 (best), -1 is default
+     */
+    public  <T extends Event>Func1<T,T> compress(int level) {
+        Compression.level(level);
         return t -> {
             LOGGER.trace("Compressing event");
-            return  (T) Codecs.BYTES.from(Streams.zlibCompress(t.raw()));
+            return  (T) Codecs.BYTES.from(Compression.zlib(t.raw(), level));
         };
     }
 
     public  <T extends Event>Func1<T,T> decompress() {
         return t -> {
             LOGGER.trace("Decompressing event");
-            return (T) Codecs.BYTES.from(Streams.zlibDecompress(t.raw()));
+            return (T) Codecs.BYTES.from(Compression.unzlib(t.raw()));
         };
     }
 }
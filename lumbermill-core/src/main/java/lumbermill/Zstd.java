@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.Event;
+import lumbermill.internal.MapWrap;
+import lumbermill.internal.Streams;
+import lumbermill.internal.ZstdCompression;
+import okio.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Zstandard compression, accessible from Core.zstd. Better ratio than gzip at a much lower
+ * cpu cost. Small events compress a lot better with a dictionary trained on sample events,
+ * the dictionary must then be available when decompressing.
+ *
+ * <pre>
+ * Groovy usage:
+ *  {@code
+ * .map(zstd.compress())            // Level 3
+ * .map(zstd.compress(9))           // Level 1-22
+ * .map(zstd.decompress())
+ *
+ * // Train once on a few thousand sample events and save it
+ * Streams.write(zstd.train(sampleEvents, 64 * 1024), new File('/etc/lumbermill/events.dict'))
+ *
+ * def dictionary = zstd.dictionary('/etc/lumbermill/events.dict')
+ * .map(zstd.compress(3, dictionary))
+ * .map(zstd.decompress(dictionary))
+ *
+ * .flatMap(zstd.compress(file: '{path}', level: 9, output_field: 'zstd_path_compressed'))
+ * .flatMap(s3.put(bucket: 'archive', key: '{key}.zst', file: '{zstd_path_compressed}'))
+ * }
+ * </pre>
+ */
+class Zstd {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Zstd.class);
+
+    private final static String DEFAULT_COMPRESS_OUTPUT_FIELD = "zstd_path_compressed";
+    private final static String DEFAULT_DECOMPRESS_OUTPUT_FIELD = "zstd_path_decompressed";
+
+    public  <T extends Event>Func1<T,T> compress() {
+        return compress(ZstdCompression.DEFAULT_LEVEL);
+    }
+
+    public  <T extends Event>Func1<T,T> compress(int level) {
+        return compress(level, null);
+    }
+
+    /**
+     * Compresses with the dictionary, use train() or dictionary() to create it
+     */
+    public  <T extends Event>Func1<T,T> compress(int level, ByteString dictionary) {
+        ZstdCompression zstd = new ZstdCompression(level, dictionary);
+        return t -> {
+            LOGGER.trace("Compressing event");
+            return  (T) Codecs.BYTES.from(zstd.compress(t.raw()));
+        };
+    }
+
+    public  <T extends Event>Func1<T,T> decompress() {
+        return decompress((ByteString) null);
+    }
+
+    public  <T extends Event>Func1<T,T> decompress(ByteString dictionary) {
+        ZstdCompression zstd = new ZstdCompression(ZstdCompression.DEFAULT_LEVEL, dictionary);
+        return t -> {
+            LOGGER.trace("Decompressing event");
+            return (T) Codecs.BYTES.from(zstd.decompress(t.raw()));
+        };
+    }
+
+    /**
+     * Trains a dictionary on the raw contents of sample events
+     */
+    public ByteString train(List<? extends Event> samples, int dictionarySize) {
+        return ZstdCompression.train(samples.stream().map(Event::raw).collect(toList()), dictionarySize);
+    }
+
+    /**
+     * Reads a dictionary from file
+     */
+    public ByteString dictionary(String file) {
+        return Streams.read(file);
+    }
+
+    /**
+     * Compresses the file as a zstd stream, 'level' and 'dictionary' (a path) are optional
+     */
+    public  <T extends Event>Func1<T,Observable<T>> compress(Map map) {
+        MapWrap parameters = MapWrap.of(map);
+        ZstdCompression zstd = create(parameters, parameters.get("level", ZstdCompression.DEFAULT_LEVEL));
+        return CompressedFiles.transform(parameters, DEFAULT_COMPRESS_OUTPUT_FIELD, zstd::compress);
+    }
+
+    /**
+     * Decompresses the file, 'dictionary' (a path) is optional
+     */
+    public  <T extends Event>Func1<T,Observable<T>> decompress(Map map) {
+        MapWrap parameters = MapWrap.of(map);
+        ZstdCompression zstd = create(parameters, ZstdCompression.DEFAULT_LEVEL);
+        return CompressedFiles.transform(parameters, DEFAULT_DECOMPRESS_OUTPUT_FIELD, zstd::decompress);
+    }
+
+    private static ZstdCompression create(MapWrap parameters, int level) {
+        ByteString dictionary = parameters.exists("dictionary") ? Streams.read(parameters.asString("dictionary")) : null;
+        return new ZstdCompression(level, dictionary);
+    }
+}
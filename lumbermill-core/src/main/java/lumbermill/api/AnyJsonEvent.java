@@ -22,10 +22,8 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import okio.ByteString;
 import rx.Observable;
 
-import java.util.ArrayList;
 import java.util.List;
 
-import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 
 /**
@@ -44,20 +42,18 @@ public class AnyJsonEvent extends MetaDataEvent {
     public static AnyJsonEvent fromJsonEvents(List<JsonEvent> events) {
         return new AnyJsonEvent(Codecs.objectMapper.createArrayNode()
                 .addAll(events.stream()
-                .map(jsonEvent -> jsonEvent.jsonNode)
+                .map(jsonEvent -> jsonEvent.node())
                 .collect(toList())));
     }
 
 
 
     public Observable<JsonEvent> each() {
-        List<JsonEvent> list = new ArrayList<>();
         if (objectNodeOrArrayNode instanceof ObjectNode) {
-            return Observable.from(asList(new JsonEvent((ObjectNode) objectNodeOrArrayNode)));
+            return Observable.just(new JsonEvent((ObjectNode) objectNodeOrArrayNode));
         }
-
-        objectNodeOrArrayNode.forEach(node -> list.add(new JsonEvent((ObjectNode) node)));
-        return Observable.from(list);
+        return Observable.from(objectNodeOrArrayNode)
+                .map(node -> new JsonEvent((ObjectNode) node));
     }
 
     public String toString() {
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lumbermill.internal.Json;
+import okio.ByteString;
+
+/**
+ * Codec for binary json formats like Smile and CBOR. These are smaller and cheaper to
+ * parse than json text and useful between Lumber Mill instances where nobody reads the data,
+ * e.g. when writing to and reading from Kinesis.
+ *
+ * Unlike other codecs this can also encode a JsonEvent.
+ *
+ * @see Codecs#SMILE
+ * @see Codecs#CBOR
+ */
+public class BinaryJsonCodec extends AbstractCodec<JsonEvent> {
+
+    private final ObjectMapper mapper;
+    private final String name;
+
+    BinaryJsonCodec(ObjectMapper mapper, String name) {
+        this.mapper = mapper;
+        this.name = name;
+    }
+
+    @Override
+    public JsonEvent from(ByteString b) {
+        return new JsonEvent((ObjectNode) Json.parse(mapper, b));
+    }
+
+    /**
+     * Serializes the json structure of the event, metadata is not included.
+     */
+    public ByteString encode(JsonEvent event) {
+        return Json.write(mapper, event.node());
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -14,7 +14,6 @@
  */
 package lumbermill.api;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lumbermill.api.BytesEvent;
@@ -23,12 +22,10 @@ import lumbermill.api.Codec;
 import lumbermill.api.Event;
 import lumbermill.api.AnyJsonEvent;
 import lumbermill.api.JsonEvent;
+import lumbermill.internal.Json;
+import lumbermill.internal.TimestampRenderer;
 import okio.ByteString;
 
-import java.io.IOException;
-import java.time.format.DateTimeFormatter;
-
-import static java.time.ZonedDateTime.now;
 
 /**
  * Core codecs
@@ -53,6 +50,22 @@ public class Codecs {
      */
     public static Codec<JsonEvent>    JSON_OBJECT  = jsonObject();
 
+    /**
+     * Same as JSON_OBJECT but the json is not parsed until a field is accessed and
+     * the original bytes are kept as raw() until the event is modified.
+     */
+    public static Codec<JsonEvent>    LAZY_JSON_OBJECT = lazyJsonObject();
+
+    /**
+     * Reads and writes Smile, binary json, to and from JsonEvent.
+     */
+    public static BinaryJsonCodec     SMILE        = new BinaryJsonCodec(Json.SMILE_MAPPER, "SmileCodec");
+
+    /**
+     * Reads and writes CBOR to and from JsonEvent.
+     */
+    public static BinaryJsonCodec     CBOR         = new BinaryJsonCodec(Json.CBOR_MAPPER, "CborCodec");
+
     /**
      * Reads anything
      */
@@ -68,7 +81,7 @@ public class Codecs {
 
            @Override
            public AnyJsonEvent from(byte[] b) {
-               return jsonArray(ByteString.of(b));
+               return new AnyJsonEvent(Json.parse(b));
            }
 
            @Override
@@ -92,7 +105,7 @@ public class Codecs {
 
             @Override
             public JsonEvent from(byte[] b) {
-                return json(ByteString.of(b));
+                return new JsonEvent((ObjectNode) Json.parse(b));
             }
 
             @Override
@@ -107,6 +120,20 @@ public class Codecs {
         };
     }
 
+    private static Codec<JsonEvent> lazyJsonObject() {
+        return new AbstractCodec<JsonEvent>() {
+            @Override
+            public JsonEvent from(ByteString b) {
+                return new LazyJsonEvent(b);
+            }
+
+            @Override
+            public String toString() {
+                return "LazyJsonObjectCodec";
+            }
+        };
+    }
+
     private static Codec<JsonEvent> textToJson() {
         return new Codec<JsonEvent>() {
             @Override
@@ -158,31 +185,21 @@ public class Codecs {
 
 
     private static AnyJsonEvent jsonArray(ByteString json) {
-        try {
-
-            JsonNode node = objectMapper.readTree(json.utf8());
-            return new AnyJsonEvent(node);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return new AnyJsonEvent(Json.parse(json));
     }
 
 
     private static JsonEvent raw(ByteString raw) {
         ObjectNode objectNode = objectMapper.createObjectNode()
                 .put("message", raw.utf8())
-                .put("@timestamp", now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+                .put("@timestamp", TimestampRenderer.systemDefault().now());
         objectNode.set("tags",objectNode.arrayNode());
         return new JsonEvent(objectNode);
     }
 
 
     private static final JsonEvent json(ByteString json) {
-        try {
-            return new JsonEvent((ObjectNode)objectMapper.readTree(json.utf8()));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return new JsonEvent((ObjectNode) Json.parse(json));
     }
 
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled reference to a possibly nested field in a JsonEvent. Compile once when the
+ * pipeline is created and use it for each event, this avoids splitting the path and
+ * wrapping child nodes for every access.
+ *
+ * FieldPath.compile("message")             // Top level field, same as using "message"
+ * FieldPath.compile("[awslogs][data]")     // Nested field
+ * FieldPath.compile("[Records][0][s3]")    // Index in array
+ *
+ */
+public final class FieldPath {
+
+    private final String path;
+
+    /**
+     * Field name for each level
+     */
+    private final String[] names;
+
+    /**
+     * Array index for each level, -1 if the name is not numeric
+     */
+    private final int[] indexes;
+
+    private FieldPath(String path, String[] names) {
+        this.path = path;
+        this.names = names;
+        this.indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes[i] = toIndex(names[i]);
+        }
+    }
+
+    public static FieldPath compile(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Field path must not be empty");
+        }
+        if (!isNested(path)) {
+            return new FieldPath(path, new String[] {path});
+        }
+        List<String> names = new ArrayList<>();
+        int pos = 0;
+        while (pos < path.length()) {
+            int end = path.indexOf(']', pos);
+            if (path.charAt(pos) != '[' || end == -1 || end == pos + 1) {
+                throw new IllegalArgumentException("Invalid field path " + path);
+            }
+            names.add(path.substring(pos + 1, end));
+            pos = end + 1;
+        }
+        return new FieldPath(path, names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * Paths using the [a][b] syntax, anything else is treated as a single top level field.
+     */
+    public static boolean isNested(String path) {
+        return path.length() > 2 && path.charAt(0) == '[' && path.charAt(path.length() - 1) == ']';
+    }
+
+    /**
+     * True if this is a single field directly in the json object.
+     */
+    public boolean isTopLevel() {
+        return names.length == 1;
+    }
+
+    /**
+     * Name of the last field in the path
+     */
+    public String leaf() {
+        return names[names.length - 1];
+    }
+
+    public String original() {
+        return path;
+    }
+
+    /**
+     * Returns the node at this path or null if any part of the path does not exist.
+     */
+    public JsonNode find(JsonNode root) {
+        JsonNode current = root;
+        for (int i = 0; i < names.length && current != null; i++) {
+            current = step(current, i);
+        }
+        return current;
+    }
+
+    /**
+     * Returns the object containing the last field in the path, missing objects are
+     * created on the way. Returns null if the path runs into a value or a missing array element.
+     */
+    JsonNode parent(ObjectNode root, boolean create) {
+        JsonNode current = root;
+        for (int i = 0; i < names.length - 1; i++) {
+            JsonNode next = step(current, i);
+            if (next == null || next.isNull()) {
+                if (!create || !current.isObject()) {
+                    return null;
+                }
+                next = ((ObjectNode) current).putObject(names[i]);
+            }
+            if (!next.isContainerNode()) {
+                return null;
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * Sets the value of the last field in the path on the parent returned by parent().
+     */
+    void set(JsonNode parent, JsonNode value) {
+        int last = names.length - 1;
+        if (parent.isArray()) {
+            ArrayNode array = (ArrayNode) parent;
+            if (indexes[last] < 0 || indexes[last] > array.size()) {
+                throw new IllegalStateException("Invalid array index in field path " + path);
+            }
+            if (indexes[last] == array.size()) {
+                array.add(value);
+            } else {
+                array.set(indexes[last], value);
+            }
+        } else {
+            ((ObjectNode) parent).set(names[last], value);
+        }
+    }
+
+    /**
+     * Removes the last field in the path from the parent returned by parent().
+     */
+    void remove(JsonNode parent) {
+        int last = names.length - 1;
+        if (parent.isArray()) {
+            if (indexes[last] >= 0 && indexes[last] < parent.size()) {
+                ((ArrayNode) parent).remove(indexes[last]);
+            }
+        } else {
+            ((ObjectNode) parent).remove(names[last]);
+        }
+    }
+
+    private JsonNode step(JsonNode node, int level) {
+        if (node.isArray()) {
+            return indexes[level] < 0 ? null : node.get(indexes[level]);
+        }
+        return node.get(names[level]);
+    }
+
+    private static int toIndex(String name) {
+        if (name.isEmpty() || name.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return path.equals(((FieldPath) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
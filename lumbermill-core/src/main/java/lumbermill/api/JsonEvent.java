@@ -20,6 +20,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import lumbermill.internal.Json;
 import okio.ByteString;
 
 import java.util.ArrayList;
@@ -36,7 +38,22 @@ public class JsonEvent extends MetaDataEvent {
 
     protected static ObjectMapper objectMapper = new ObjectMapper();
 
-    protected final ObjectNode jsonNode;
+    /**
+     * Never access directly, use node() when reading and modify() when writing
+     * so that subclasses can defer parsing and track changes.
+     */
+    protected ObjectNode jsonNode;
+
+    /**
+     * Serialized form of jsonNode, created on first call to raw() and cleared by modify().
+     */
+    private ByteString serialized;
+
+    /**
+     * Set when a child shares structure with this event, it can then be changed without
+     * this event knowing so raw() is no longer cached.
+     */
+    private boolean shared = false;
 
     public JsonEvent() {
         this.jsonNode = objectMapper.createObjectNode();
@@ -44,40 +61,83 @@ public class JsonEvent extends MetaDataEvent {
 
 
     public ObjectNode copyNode() {
-        return jsonNode.deepCopy();
+        return node().deepCopy();
     }
 
     public JsonEvent(ObjectNode jsonNode) {
         this.jsonNode = jsonNode;
     }
 
+    /**
+     * For subclasses that already have the serialized form of the json structure.
+     */
+    protected JsonEvent(ObjectNode jsonNode, ByteString serialized) {
+        this.jsonNode = jsonNode;
+        this.serialized = serialized;
+    }
+
+    /**
+     * The json structure, for read access only.
+     */
+    protected ObjectNode node() {
+        return jsonNode;
+    }
+
+    /**
+     * The json structure, must be used by any operation that changes it.
+     */
+    protected ObjectNode modify() {
+        serialized = null;
+        return node();
+    }
+
     public JsonEvent put(String fieldName, String value) {
-        jsonNode.put(fieldName, value);
+        modify().put(fieldName, value);
         return this;
     }
 
     public JsonEvent put(String fieldName, int value) {
-        jsonNode.put(fieldName, value);
+        modify().put(fieldName, value);
         return this;
     }
 
     public JsonEvent put(String fieldName, long value) {
-        jsonNode.put(fieldName, value);
+        modify().put(fieldName, value);
         return this;
     }
 
     public JsonEvent put(String fieldName, float value) {
-        jsonNode.put(fieldName, value);
+        modify().put(fieldName, value);
         return this;
     }
 
     public JsonEvent put(String fieldName, boolean value) {
-        jsonNode.put(fieldName, value);
+        modify().put(fieldName, value);
+        return this;
+    }
+
+    /**
+     * Sets the value at the path, missing objects on the way are created.
+     */
+    public JsonEvent put(FieldPath path, String value) {
+        return put(path, TextNode.valueOf(value));
+    }
+
+    public JsonEvent put(FieldPath path, JsonNode value) {
+        if (path.isTopLevel()) {
+            modify().set(path.leaf(), value);
+            return this;
+        }
+        JsonNode parent = path.parent(modify(), true);
+        if (parent == null) {
+            throw new IllegalStateException("Unable to put value at " + path + ", path is not an object");
+        }
+        path.set(parent, value);
         return this;
     }
 
     public Boolean asBoolean(String field) {
-        return jsonNode.get(field).asBoolean();
+        return node().get(field).asBoolean();
     }
 
     public void putMetaData(String key, Object value) {
@@ -86,35 +146,61 @@ public class JsonEvent extends MetaDataEvent {
 
     @Override
     public String valueAsString(String field) {
-        if (this.jsonNode.has(field)) {
-
-            JsonNode node = jsonNode.get(field);
-
-            // TODO: This should find another home
-            // Support for boolean expressions of arrays
-            if (node instanceof ArrayNode) {
-                Iterator<JsonNode> elements = node.elements();
-                StringBuffer sb = new StringBuffer("[");
-                while (elements.hasNext()) {
-                    sb.append("'").append(elements.next().asText()).append("'");
-                    if (elements.hasNext()) {
-                        sb.append(",");
-                    }
+        ObjectNode jsonNode = node();
+        if (jsonNode.has(field)) {
+            return asText(jsonNode.get(field));
+        }
+        return super.valueAsString(field);
+    }
+
+    /**
+     * Same as valueAsString(String) but supports nested fields, metadata is only
+     * checked for top level fields.
+     */
+    public String valueAsString(FieldPath path) {
+        if (path.isTopLevel()) {
+            return valueAsString(path.leaf());
+        }
+        return asText(path.find(node()));
+    }
+
+    private static String asText(JsonNode node) {
+        if (node == null) {
+            return null;
+        }
+
+        // TODO: This should find another home
+        // Support for boolean expressions of arrays
+        if (node instanceof ArrayNode) {
+            Iterator<JsonNode> elements = node.elements();
+            StringBuilder sb = new StringBuilder("[");
+            while (elements.hasNext()) {
+                sb.append("'").append(elements.next().asText()).append("'");
+                if (elements.hasNext()) {
+                    sb.append(",");
                 }
-                return sb.append("]").toString();
             }
+            return sb.append("]").toString();
+        }
+        return node.asText();
+    }
 
-            if (node == null) {
-                return null;
-            }
+    /**
+     * Returns the json node at the path or null if it does not exist, for read access only.
+     */
+    public JsonNode find(FieldPath path) {
+        return path.find(node());
+    }
 
-            return node.asText();
+    public boolean has(FieldPath path) {
+        if (path.isTopLevel()) {
+            return has(path.leaf());
         }
-        return super.valueAsString(field);
+        return path.find(node()) != null;
     }
 
     public boolean has(String field) {
-        return jsonNode.has(field) ? true : super.has(field);
+        return node().has(field) ? true : super.has(field);
     }
 
     @Override
@@ -124,24 +210,29 @@ public class JsonEvent extends MetaDataEvent {
 
     public String toString(boolean pretty)
     {
+        if (!pretty) {
+            return raw().utf8();
+        }
         try {
-            return pretty ? objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(jsonNode)
-                    : objectMapper.writeValueAsString(jsonNode);
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(node());
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
 
     public void merge(JsonEvent event) {
-        Iterator<String> stringIterator = event.jsonNode.fieldNames();
+        ObjectNode jsonNode = modify();
+        ObjectNode other = event.node();
+        Iterator<String> stringIterator = other.fieldNames();
         while(stringIterator.hasNext()) {
             String field = stringIterator.next();
-            jsonNode.set(field, event.jsonNode.get(field));
+            jsonNode.set(field, other.get(field));
         }
     }
 
     public void eachField(FieldProcessor processor) {
 
+        ObjectNode jsonNode = node();
         ArrayList<String> list = new ArrayList<String >();
         Iterator<String> stringIterator = jsonNode.fieldNames();
         while(stringIterator.hasNext()) {
@@ -155,21 +246,50 @@ public class JsonEvent extends MetaDataEvent {
 
     @Override
     public ByteString raw() {
-        return ByteString.encodeUtf8(toString(false));
+        if (shared) {
+            return serialize();
+        }
+        if (serialized == null) {
+            serialized = serialize();
+        }
+        return serialized;
+    }
+
+    /**
+     * Writes the json as UTF-8 bytes without creating an intermediate String.
+     */
+    private ByteString serialize() {
+        return Json.write(objectMapper, node());
     }
 
     public JsonEvent remove(String... fields) {
+        ObjectNode jsonNode = modify();
         for(String field : fields) {
             jsonNode.remove(field);
         }
         return this;
     }
 
+    public JsonEvent remove(FieldPath... paths) {
+        ObjectNode jsonNode = modify();
+        for (FieldPath path : paths) {
+            if (path.isTopLevel()) {
+                jsonNode.remove(path.leaf());
+            } else {
+                JsonNode parent = path.parent(jsonNode, false);
+                if (parent != null) {
+                    path.remove(parent);
+                }
+            }
+        }
+        return this;
+    }
+
     public boolean contains(String field, String value) {
-        if (!jsonNode.has(field)) {
+        if (!node().has(field)) {
             return false;
         }
-        JsonNode jsonNode = this.jsonNode.get(field);
+        JsonNode jsonNode = node().get(field);
         if (jsonNode instanceof ArrayNode) {
             for (JsonNode  node : jsonNode) {
                 if (node.asText().equals(value)) {
@@ -181,9 +301,10 @@ public class JsonEvent extends MetaDataEvent {
     }
 
     public JsonEvent add(String field, String... values) {
+        ObjectNode jsonNode = modify();
         for (String value : values) {
             if (jsonNode.has(field)) {
-                ArrayNode arrayNode = (ArrayNode) this.jsonNode.get(field);
+                ArrayNode arrayNode = (ArrayNode) jsonNode.get(field);
                 arrayNode.add(value);
             } else {
                 jsonNode.set(field, jsonNode.arrayNode().add(value));
@@ -194,7 +315,7 @@ public class JsonEvent extends MetaDataEvent {
 
     @Override
     public int hashCode() {
-        return jsonNode.hashCode();
+        return node().hashCode();
     }
 
     @Override
@@ -203,7 +324,7 @@ public class JsonEvent extends MetaDataEvent {
         if (o == null || getClass() != o.getClass()) return false;
 
         JsonEvent jsonEvent = (JsonEvent) o;
-        return jsonNode != null ? jsonNode.equals(jsonEvent.jsonNode) : jsonEvent.jsonNode == null;
+        return node() != null ? node().equals(jsonEvent.node()) : jsonEvent.node() == null;
     }
 
     @Override
@@ -236,6 +357,7 @@ public class JsonEvent extends MetaDataEvent {
     }
 
     private void putObject(String key, Object o) {
+        ObjectNode jsonNode = modify();
         if (o instanceof String) {
             jsonNode.put(key, (String) o);
         } else if (o instanceof Integer) {
@@ -249,12 +371,20 @@ public class JsonEvent extends MetaDataEvent {
         }
     }
 
+    /**
+     * The child shares its structure with this event, so it is treated as a modification.
+     */
     public AnyJsonEvent child(String field) {
-        return new AnyJsonEvent(this.jsonNode.get(field));
+        shared = true;
+        return new AnyJsonEvent(modify().get(field));
     }
 
+    /**
+     * The child shares its structure with this event, so it is treated as a modification.
+     */
     public JsonEvent objectChild(String field) {
-        return new JsonEvent((ObjectNode) this.jsonNode.get(field));
+        shared = true;
+        return new JsonEvent((ObjectNode) modify().get(field));
     }
 
 
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lumbermill.internal.Json;
+import okio.ByteString;
+
+/**
+ * JsonEvent that keeps the bytes it was decoded from and does not parse them
+ * until a field is read or written. As long as the event is not modified, raw()
+ * returns the original bytes so the event is never re-serialized. Source spanning
+ * multiple lines, like pretty printed json, is re-serialized on a single line since
+ * raw() is used in line based formats such as the Elasticsearch bulk body.
+ *
+ * Note that invalid json is not detected until the event is first accessed.
+ *
+ * @see Codecs#LAZY_JSON_OBJECT
+ */
+public class LazyJsonEvent extends JsonEvent {
+
+    private final ByteString source;
+
+    public LazyJsonEvent(ByteString source) {
+        // Parsed on first access, source is kept as serialized form until modified
+        super(null, isSingleLine(source) ? source : null);
+        this.source = source;
+    }
+
+    private static boolean isSingleLine(ByteString source) {
+        for (int i = 0; i < source.size(); i++) {
+            byte b = source.getByte(i);
+            if (b == '\n' || b == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected ObjectNode node() {
+        if (jsonNode == null) {
+            jsonNode = (ObjectNode) Json.parse(source);
+        }
+        return jsonNode;
+    }
+
+    /**
+     * True if the json has been parsed, mostly useful for testing
+     */
+    public boolean isParsed() {
+        return jsonNode != null;
+    }
+}
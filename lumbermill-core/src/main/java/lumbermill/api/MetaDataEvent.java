@@ -14,56 +14,78 @@
  */
 package lumbermill.api;
 
-import lumbermill.internal.MapWrap;
+import lumbermill.internal.SmallMap;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
+/**
+ * Holds metadata and tags for events that do not store them in their own structure.
+ *
+ * Nothing is allocated until metadata is first written since most events never use it.
+ * The "tags" key always exists and holds the list of tags.
+ */
 public abstract class MetaDataEvent implements Event {
 
-    private final MapWrap map = MapWrap.of(new HashMap() {
-        {
-            put("tags", new ArrayList<>());
-        }
-    });
+    private static final String TAGS = "tags";
+
+    private SmallMap metaData;
 
     @Override
     public boolean hasTag(String tag) {
-        List<String> tags = map.get("tags");
-        return tags.contains(tag);
+        if (metaData == null) {
+            return false;
+        }
+        List<String> tags = metaData.get(TAGS);
+        return tags != null && tags.contains(tag);
     }
 
     @Override
     public <T extends Event> T put(String key, Object value) {
-        map.toMap().put(key, value);
+        metaData().put(key, value);
         return (T)this;
     }
 
     @Override
     public boolean has(String field) {
-        return map.exists(field);
+        return TAGS.equals(field) || (metaData != null && metaData.containsKey(field));
     }
 
     @Override
     public String valueAsString(String field) {
-        return has(field) ? map.asString(field) : null;
+        return has(field) ? String.valueOf((Object) get(field)) : null;
     }
 
     @Override
     public <T> T get(String key) {
-        return (T)map.get(key);
+        if (TAGS.equals(key)) {
+            return (T) tags();
+        }
+        return metaData == null ? null : metaData.get(key);
     }
 
     public Event addTag(String tag) {
-        List<String> tags = map.get("tags");
-        tags.add(tag);
+        tags().add(tag);
         return this;
     }
 
     public void addTags(List<String> tags) {
-        List<String> tagss = map.get("tags");
-        tagss.addAll(tags);
+        tags().addAll(tags);
     }
-}
 
+    private SmallMap metaData() {
+        if (metaData == null) {
+            metaData = new SmallMap();
+        }
+        return metaData;
+    }
+
+    private List<String> tags() {
+        List<String> tags = metaData().get(TAGS);
+        if (tags == null) {
+            tags = new ArrayList<>();
+            metaData.put(TAGS, tags);
+        }
+        return tags;
+    }
+}
@@ -2,88 +2,73 @@ package lumbermill.internal;
 
 import lumbermill.api.Event;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
-import java.util.Optional;
-
-
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boolean expression over event fields, see Expression for the supported syntax.
+ *
+ * fromString("{code} >= 500 && '{environment}' == 'prod'")
+ * fromString("{tags}.contains('error')")
+ *
+ * The expression is compiled once and is safe to evaluate from multiple threads.
+ */
 public abstract class BooleanExpression {
 
-    protected final StringTemplate expressionPattern;
+    protected final String pattern;
 
     public BooleanExpression(String pattern) {
-        this.expressionPattern = StringTemplate.compile(pattern);
+        this.pattern = pattern;
     }
 
     public static BooleanExpression fromString(String expression) {
-        return new BooleanJavaScriptExpression(expression);
+        return new CompiledBooleanExpression(expression);
     }
 
-    public abstract BooleanExpression init(String script);
-
     public abstract boolean eval(Event event);
 
 
-    static class BooleanJavaScriptExpression extends BooleanExpression {
+    static class CompiledBooleanExpression extends BooleanExpression {
 
-        private static final ScriptEngine se =
-                new ScriptEngineManager().getEngineByName("JavaScript");
-        static {
-            try {
-                se.eval("Array.prototype.contains = function(obj) {\n" +
-                        "    var i = this.length;\n" +
-                        "    while (i--) {\n" +
-                        "        if (this[i] === obj) {\n" +
-                        "            return true;\n" +
-                        "        }\n" +
-                        "    }\n" +
-                        "    return false;\n" +
-                        "}\n");
+        private final Expression expression;
 
+        /**
+         * All fields referenced by the expression
+         */
+        private final Expression.FieldRef[] fields;
 
-            } catch (ScriptException e) {
-                throw new IllegalStateException(e);
-            }
-        }
-
-        BooleanJavaScriptExpression(String expression) {
+        CompiledBooleanExpression(String expression) {
             super(expression);
+            List<Expression.FieldRef> fields = new ArrayList<>();
+            this.expression = Expression.parse(expression, fields);
+            this.fields = fields.toArray(new Expression.FieldRef[fields.size()]);
         }
 
+        /**
+         * An expression that refers to fields is false if the event has none of them.
+         */
         @Override
-        public BooleanExpression init(String script) {
-            try {
-                se.eval(script);
-            } catch (ScriptException e) {
-                throw new IllegalStateException(e);
-            }
-            return this;
-        }
-
-
         public boolean eval(Event event) {
-            Optional<String> formattedExpression = expressionPattern.format(event);
-            if (formattedExpression.isPresent()) {
-                return doEval(formattedExpression.get());
+            if (fields.length > 0 && !hasAnyField(event)) {
+                return false;
             }
-            return false;
+            return Expression.isTrue(expression.eval(event));
         }
 
-        private boolean doEval(String expression) {
-            try {
-                return (Boolean)se.eval(expression);
-            } catch (ScriptException e) {
-                throw new IllegalStateException("BooleanExpression is invalid: " + expression, e);
+        private boolean hasAnyField(Event event) {
+            for (Expression.FieldRef field : fields) {
+                if (field.has(event)) {
+                    return true;
+                }
             }
+            return false;
         }
-
     }
 
     @Override
     public String toString() {
         return "BooleanExpression{" +
-                "expressionPattern=" + expressionPattern +
+                "pattern=" + pattern +
                 '}';
     }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import okio.Buffer;
+import okio.ByteString;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Zlib and gzip compression of byte strings with Deflaters and Inflaters that are reset and reused
+ * for each call. The output is written to an okio Buffer, whose segments are pooled, and copied
+ * once into the returned ByteString.
+ *
+ * Deflaters and Inflaters hold native zlib memory, so they are kept in small bounded pools
+ * instead of per thread, threads of the io scheduler come and go. One that is returned to a
+ * full pool is ended right away instead of waiting for finalization. The heap buffers are
+ * still kept per thread.
+ */
+public final class Compression {
+
+    public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Largest decompressed size that formats declaring their size up front (lz4, snappy, zstd)
+     * allocate for, so a corrupt or hostile size can not exhaust the heap. Configured with the
+     * system property lumbermill.compression.maxDecompressedSize, default 64 MB.
+     */
+    public static final int MAX_DECOMPRESSED_SIZE =
+            Integer.getInteger("lumbermill.compression.maxDecompressedSize", 64 * 1024 * 1024);
+
+    /**
+     * Output buffers larger than this are not kept by the thread
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * Same header as java.util.zip.GZIPOutputStream, no timestamp or file name
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final ThreadLocal<Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private static final Pool<Deflater> ZLIB_DEFLATERS =
+            new Pool<>(() -> new Deflater(DEFAULT_LEVEL), Deflater::reset, Deflater::end);
+    private static final Pool<Deflater> GZIP_DEFLATERS =
+            new Pool<>(() -> new Deflater(DEFAULT_LEVEL, true), Deflater::reset, Deflater::end);
+    private static final Pool<Inflater> ZLIB_INFLATERS =
+            new Pool<>(Inflater::new, Inflater::reset, Inflater::end);
+    private static final Pool<Inflater> GZIP_INFLATERS =
+            new Pool<>(() -> new Inflater(true), Inflater::reset, Inflater::end);
+
+    private Compression() {}
+
+    /**
+     * Validates a compression level, 0-9 or -1 for default
+     */
+    public static int level(int level) {
+        if (level != DEFAULT_LEVEL && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Compression level must be 0-9 or -1 (default), was " + level);
+        }
+        return level;
+    }
+
+    public static ByteString zlib(ByteString bytes, int level) {
+        Context context = CONTEXT.get();
+        Buffer out = new Buffer();
+        Deflater deflater = ZLIB_DEFLATERS.take();
+        try {
+            deflater.setLevel(level);
+            deflate(context, deflater, bytes.toByteArray(), out);
+        } finally {
+            ZLIB_DEFLATERS.release(deflater);
+        }
+        return out.readByteString();
+    }
+
+    public static ByteString unzlib(ByteString bytes) {
+        Context context = CONTEXT.get();
+        byte[] data = bytes.toByteArray();
+        Buffer out = new Buffer();
+        Inflater inflater = ZLIB_INFLATERS.take();
+        try {
+            inflater.setInput(data);
+            inflate(context, inflater, out);
+        } finally {
+            ZLIB_INFLATERS.release(inflater);
+        }
+        return out.readByteString();
+    }
+
+    public static ByteString gzip(ByteString bytes, int level) {
+        Context context = CONTEXT.get();
+        byte[] data = bytes.toByteArray();
+        Buffer out = new Buffer();
+        out.write(GZIP_HEADER);
+        Deflater deflater = GZIP_DEFLATERS.take();
+        try {
+            deflater.setLevel(level);
+            deflate(context, deflater, data, out);
+        } finally {
+            GZIP_DEFLATERS.release(deflater);
+        }
+        CRC32 crc = context.crc;
+        crc.reset();
+        crc.update(data, 0, data.length);
+        out.writeIntLe((int) crc.getValue());
+        out.writeIntLe(data.length);
+        return out.readByteString();
+    }
+
+    /**
+     * Decompresses all members of the gzip data, data after the last member is ignored
+     * like java.util.zip.GZIPInputStream does.
+     */
+    public static ByteString gunzip(ByteString bytes) {
+        Context context = CONTEXT.get();
+        byte[] data = bytes.toByteArray();
+        Buffer out = new Buffer();
+        Inflater inflater = GZIP_INFLATERS.take();
+        try {
+            gunzip(context, inflater, data, out);
+        } finally {
+            GZIP_INFLATERS.release(inflater);
+        }
+        return out.readByteString();
+    }
+
+    private static void gunzip(Context context, Inflater inflater, byte[] data, Buffer out) {
+        CRC32 crc = context.crc;
+        int pos = 0;
+        do {
+            pos = skipHeader(data, pos);
+            inflater.reset();
+            inflater.setInput(data, pos, data.length - pos);
+            crc.reset();
+            long start = out.size();
+            inflate(context, inflater, out, crc);
+            pos = data.length - inflater.getRemaining();
+            if (data.length - pos < 8) {
+                throw new IllegalStateException("Unexpected end of gzip data");
+            }
+            if (intLe(data, pos) != (int) crc.getValue() || intLe(data, pos + 4) != (int) (out.size() - start)) {
+                throw new IllegalStateException("Corrupt gzip trailer");
+            }
+            pos += 8;
+        } while (data.length - pos >= GZIP_HEADER.length && shortLe(data, pos) == GZIP_MAGIC);
+    }
+
+    /**
+     * A buffer of at least size bytes for the calling thread to compress into, it is only valid
+     * until the next call on the same thread. Used by the other compression formats.
+     */
+    static byte[] buffer(int size) {
+        Context context = CONTEXT.get();
+        if (context.buffer.length >= size) {
+            return context.buffer;
+        }
+        byte[] buffer = new byte[Math.max(size, context.buffer.length * 2)];
+        if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+            context.buffer = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * Validates a decompressed size declared in compressed data before allocating for it
+     *
+     * @param maxRatio the highest possible compression ratio of the format, 0 if unbounded
+     */
+    static int checkDecompressedSize(String format, long size, int compressedSize, int maxRatio) {
+        if (size < 0 || size > MAX_DECOMPRESSED_SIZE || (maxRatio > 0 && size > (long) compressedSize * maxRatio)) {
+            throw new IllegalStateException("Corrupt " + format + " data, invalid decompressed size " + size
+                    + " for " + compressedSize + " compressed bytes");
+        }
+        return (int) size;
+    }
+
+    private static void deflate(Context context, Deflater deflater, byte[] data, Buffer out) {
+        byte[] chunk = context.chunk;
+        deflater.setInput(data);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int count = deflater.deflate(chunk);
+            out.write(chunk, 0, count);
+        }
+    }
+
+    private static void inflate(Context context, Inflater inflater, Buffer out) {
+        inflate(context, inflater, out, null);
+    }
+
+    private static void inflate(Context context, Inflater inflater, Buffer out, CRC32 crc) {
+        byte[] chunk = context.chunk;
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Unexpected end of compressed data");
+                }
+                out.write(chunk, 0, count);
+                if (crc != null) {
+                    crc.update(chunk, 0, count);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int skipHeader(byte[] data, int pos) {
+        if (data.length - pos < GZIP_HEADER.length || shortLe(data, pos) != GZIP_MAGIC) {
+            throw new IllegalStateException("Not in gzip format");
+        }
+        if (data[pos + 2] != Deflater.DEFLATED) {
+            throw new IllegalStateException("Unsupported gzip compression method " + data[pos + 2]);
+        }
+        int flags = data[pos + 3] & 0xff;
+        pos += GZIP_HEADER.length;
+        if ((flags & FEXTRA) != 0) {
+            pos += 2 + shortLe(data, pos);
+        }
+        if ((flags & FNAME) != 0) {
+            pos = skipZeroTerminated(data, pos);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            pos = skipZeroTerminated(data, pos);
+        }
+        if ((flags & FHCRC) != 0) {
+            pos += 2;
+        }
+        if (pos > data.length) {
+            throw new IllegalStateException("Unexpected end of gzip header");
+        }
+        return pos;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int pos) {
+        while (pos < data.length && data[pos] != 0) {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    private static int shortLe(byte[] data, int pos) {
+        return (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8;
+    }
+
+    private static int intLe(byte[] data, int pos) {
+        return shortLe(data, pos) | shortLe(data, pos + 2) << 16;
+    }
+
+    /**
+     * Heap buffers of one thread, created lazily
+     */
+    private static final class Context {
+
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        final CRC32 crc = new CRC32();
+        byte[] buffer = new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Bounded pool of objects holding native memory. Objects are reset when returned, so they
+     * do not keep a reference to the last input, and ended when the pool is full.
+     */
+    private static final class Pool<T> {
+
+        private final Queue<T> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+        private final Supplier<T> create;
+        private final Consumer<T> reset;
+        private final Consumer<T> end;
+
+        Pool(Supplier<T> create, Consumer<T> reset, Consumer<T> end) {
+            this.create = create;
+            this.reset = reset;
+            this.end = end;
+        }
+
+        T take() {
+            T pooled = pool.poll();
+            return pooled != null ? pooled : create.get();
+        }
+
+        void release(T object) {
+            reset.accept(object);
+            if (!pool.offer(object)) {
+                end.accept(object);
+            }
+        }
+    }
+}
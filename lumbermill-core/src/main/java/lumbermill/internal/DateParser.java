@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+
+/**
+ * Parses dates with a list of formats without throwing an exception for each format that
+ * does not match. The format that matched last is tried first for the next value, since
+ * all events from the same source normally use the same format.
+ *
+ * Besides DateTimeFormatter patterns these formats are supported with hand written parsers:
+ *
+ * ISO8601  - yyyy-MM-dd'T'HH:mm:ss.SSSSSSSSSZ, time, seconds, fraction and offset are optional
+ * UNIX     - Epoch seconds, optionally with a fraction
+ * UNIX_MS  - Epoch milliseconds
+ *
+ * Values without zone or offset are in UTC. Immutable except for the remembered format.
+ */
+public final class DateParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DateParser.class);
+
+    public static final String ISO8601 = "ISO8601";
+    public static final String UNIX = "UNIX";
+    public static final String UNIX_MS = "UNIX_MS";
+
+    private final Format[] formats;
+
+    /**
+     * Index of the format that matched the last value
+     */
+    private volatile int last;
+
+    private DateParser(Format[] formats) {
+        this.formats = formats;
+    }
+
+    public static DateParser of(String... patterns) {
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("At least one date format is required");
+        }
+        Format[] formats = new Format[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            formats[i] = format(patterns[i]);
+        }
+        return new DateParser(formats);
+    }
+
+    private static Format format(String pattern) {
+        switch (pattern) {
+            case ISO8601: return DateParser::parseIso8601;
+            case UNIX:    return DateParser::parseEpochSeconds;
+            case UNIX_MS: return DateParser::parseEpochMillis;
+            default:
+                // No withZone(UTC), on Java 8 it overrides a parsed offset (JDK-8033662)
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+                return value -> parse(formatter, value);
+        }
+    }
+
+    /**
+     * Returns null if the value does not match any of the formats.
+     */
+    public ZonedDateTime parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int first = last;
+        ZonedDateTime date = formats[first].parse(value);
+        if (date != null) {
+            return date;
+        }
+        for (int i = 0; i < formats.length; i++) {
+            if (i != first && (date = formats[i].parse(value)) != null) {
+                last = i;
+                return date;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Probes with parseUnresolved() which reports errors in the ParsePosition instead of
+     * throwing, the value is only resolved once the pattern is known to match all of it.
+     * Values without zone or offset are resolved as local date times in UTC.
+     */
+    private static ZonedDateTime parse(DateTimeFormatter formatter, String value) {
+        ParsePosition position = new ParsePosition(0);
+        if (formatter.parseUnresolved(value, position) == null || position.getErrorIndex() >= 0
+                || position.getIndex() != value.length()) {
+            return null;
+        }
+        try {
+            // Check for a zone instead of trying ZonedDateTime first, that throws for every local value
+            TemporalAccessor parsed = formatter.parse(value);
+            return parsed.query(TemporalQueries.zone()) != null ?
+                    ZonedDateTime.from(parsed) : LocalDateTime.from(parsed).atZone(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            LOGGER.trace("Failed to resolve date {}: {}", value, e.getMessage());
+            return null;
+        }
+    }
+
+    static ZonedDateTime parseEpochMillis(String value) {
+        long millis = parseLong(value, 0, value.length());
+        return millis < 0 ? null : Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC);
+    }
+
+    static ZonedDateTime parseEpochSeconds(String value) {
+        int dot = value.indexOf('.');
+        int end = dot == -1 ? value.length() : dot;
+        long seconds = parseLong(value, 0, end);
+        if (seconds < 0) {
+            return null;
+        }
+        int nanos = 0;
+        if (dot != -1) {
+            nanos = parseFraction(value, dot + 1, value.length());
+            if (nanos < 0) {
+                return null;
+            }
+        }
+        return Instant.ofEpochSecond(seconds, nanos).atZone(ZoneOffset.UTC);
+    }
+
+    /**
+     * yyyy-MM-dd, optionally followed by T or space and HH:mm[:ss[.fraction]] and Z or +-HH[:mm]
+     */
+    static ZonedDateTime parseIso8601(String value) {
+        int length = value.length();
+        if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nano = 0;
+        int pos = 10;
+        if (pos < length && (value.charAt(pos) == 'T' || value.charAt(pos) == ' ')) {
+            if (length < pos + 6 || value.charAt(pos + 3) != ':') {
+                return null;
+            }
+            hour = digits(value, pos + 1, pos + 3);
+            minute = digits(value, pos + 4, pos + 6);
+            pos += 6;
+            if (pos < length && value.charAt(pos) == ':') {
+                second = digits(value, pos + 1, pos + 3);
+                pos += 3;
+                if (pos < length && (value.charAt(pos) == '.' || value.charAt(pos) == ',')) {
+                    int end = pos + 1;
+                    while (end < length && isDigit(value.charAt(end))) {
+                        end++;
+                    }
+                    nano = parseFraction(value, pos + 1, end);
+                    pos = end;
+                }
+            }
+        }
+        ZoneOffset offset = ZoneOffset.UTC;
+        if (pos < length) {
+            offset = parseOffset(value, pos);
+            if (offset == null) {
+                return null;
+            }
+        }
+        if ((year | month | day | hour | minute | second | nano) < 0
+                || month > 12 || day > 31 || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.of(LocalDateTime.of(year, month, day, hour, minute, second, nano), offset);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Z, +HH, +HHmm or +HH:mm, the offset must end the value
+     */
+    private static ZoneOffset parseOffset(String value, int pos) {
+        int remaining = value.length() - pos;
+        char sign = value.charAt(pos);
+        if (sign == 'Z' && remaining == 1) {
+            return ZoneOffset.UTC;
+        }
+        if (sign != '+' && sign != '-') {
+            return null;
+        }
+        int hours;
+        int minutes = 0;
+        if (remaining == 3) {
+            hours = digits(value, pos + 1, pos + 3);
+        } else if (remaining == 5) {
+            hours = digits(value, pos + 1, pos + 3);
+            minutes = digits(value, pos + 3, pos + 5);
+        } else if (remaining == 6 && value.charAt(pos + 3) == ':') {
+            hours = digits(value, pos + 1, pos + 3);
+            minutes = digits(value, pos + 4, pos + 6);
+        } else {
+            return null;
+        }
+        if (hours < 0 || minutes < 0 || hours > 18 || minutes > 59) {
+            return null;
+        }
+        int total = hours * 3600 + minutes * 60;
+        return ZoneOffset.ofTotalSeconds(sign == '-' ? -total : total);
+    }
+
+    /**
+     * Returns -1 if not all characters are digits
+     */
+    private static int digits(String value, int start, int end) {
+        if (end > value.length()) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Returns -1 if empty, too long or not all characters are digits
+     */
+    private static long parseLong(String value, int start, int end) {
+        if (end <= start || end - start > 18) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Fraction of a second as nanos, digits after the ninth are ignored. Returns -1 if invalid.
+     */
+    private static int parseFraction(String value, int start, int end) {
+        if (end <= start) {
+            return -1;
+        }
+        int nanos = 0;
+        for (int i = start; i < start + 9; i++) {
+            if (i < end) {
+                char c = value.charAt(i);
+                if (!isDigit(c)) {
+                    return -1;
+                }
+                nanos = nanos * 10 + (c - '0');
+            } else {
+                nanos *= 10;
+            }
+        }
+        for (int i = start + 9; i < end; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return -1;
+            }
+        }
+        return nanos;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private interface Format {
+
+        /**
+         * Returns null if the value does not match
+         */
+        ZonedDateTime parse(String value);
+    }
+}
@@ -0,0 +1,735 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lumbermill.api.Event;
+import lumbermill.api.FieldPath;
+import lumbermill.api.JsonEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Small expression language used by BooleanExpression. An expression is parsed once into
+ * a tree of immutable nodes which is then evaluated for each event, so it can be shared
+ * between threads.
+ *
+ *   {code} >= 500 && {code} < 600
+ *   '{environment}' == 'prod' || {tags}.contains('{tag}')
+ *   {message} =~ 'ERROR' && !{message}.matches('.*timeout.*')
+ *   ({bytes} / 1024) > 10
+ *
+ * Values are null, Double, String, Boolean or Iterable (json arrays and lists). Comparisons
+ * and arithmetic convert between numbers and strings like javascript does, with the difference
+ * that a missing field (null) is never less or greater than anything.
+ * Strings may contain {field} which is replaced the same way as in a StringTemplate.
+ * Supported methods are contains(), matches(), startsWith() and endsWith(), =~ finds a regex
+ * anywhere in the value while matches() must match all of it.
+ */
+abstract class Expression {
+
+    abstract Object eval(Event event);
+
+    /**
+     * Parses the expression and adds all referenced fields to the list.
+     */
+    static Expression parse(String source, List<FieldRef> fields) {
+        return new Parser(source, fields).parse();
+    }
+
+    static boolean isTrue(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Double) {
+            double d = (Double) value;
+            return d != 0 && !Double.isNaN(d);
+        }
+        if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        return true;
+    }
+
+    private static double toNumber(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof String) {
+            String s = ((String) value).trim();
+            if (s.isEmpty()) {
+                return 0;
+            }
+            try {
+                return Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static String asString(Object value) {
+        if (value instanceof Double) {
+            double d = (Double) value;
+            if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e15) {
+                return Long.toString((long) d);
+            }
+        }
+        return String.valueOf(value);
+    }
+
+    private static boolean looseEquals(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a instanceof String && b instanceof String) {
+            return a.equals(b);
+        }
+        if (isScalar(a) && isScalar(b)) {
+            return toNumber(a) == toNumber(b);
+        }
+        return a.equals(b);
+    }
+
+    private static boolean strictEquals(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a instanceof Double && b instanceof Double) {
+            return ((Double) a).doubleValue() == (Double) b;
+        }
+        return a.getClass() == b.getClass() && a.equals(b);
+    }
+
+    private static boolean isScalar(Object value) {
+        return value instanceof Double || value instanceof String || value instanceof Boolean;
+    }
+
+    /**
+     * Returns a negative, zero or positive value, or null if the values can not be ordered.
+     */
+    private static Integer compare(Object a, Object b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b);
+        }
+        double x = toNumber(a);
+        double y = toNumber(b);
+        if (Double.isNaN(x) || Double.isNaN(y)) {
+            return null;
+        }
+        return Double.compare(x, y);
+    }
+
+    private static Object fromJson(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isFloat()) {
+            // Use the float's own decimal representation, 1.1f must equal 1.1
+            return Double.parseDouble(node.asText());
+        }
+        if (node.isNumber()) {
+            return node.doubleValue();
+        }
+        if (node.isArray()) {
+            return node;
+        }
+        return node.toString();
+    }
+
+    private static Object fromObject(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Double) {
+            return value;
+        }
+        if (value instanceof Float) {
+            return Double.parseDouble(value.toString());
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Collection) {
+            return value;
+        }
+        if (value instanceof JsonNode) {
+            return fromJson((JsonNode) value);
+        }
+        return String.valueOf(value);
+    }
+
+
+    /**
+     * Reference to an event field, {name} or {[a][b]}
+     */
+    static final class FieldRef extends Expression {
+
+        private final String name;
+        private final FieldPath path;
+
+        FieldRef(String name) {
+            this.name = name;
+            this.path = FieldPath.compile(name);
+        }
+
+        boolean has(Event event) {
+            if (event instanceof JsonEvent) {
+                return ((JsonEvent) event).has(path);
+            }
+            return path.isTopLevel() && event.has(name);
+        }
+
+        @Override
+        Object eval(Event event) {
+            if (event instanceof JsonEvent) {
+                JsonNode node = ((JsonEvent) event).find(path);
+                if (node != null) {
+                    return fromJson(node);
+                }
+            }
+            if (path.isTopLevel() && event.has(name)) {
+                return fromObject(event.get(name));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + name + "}";
+        }
+    }
+
+    private static final class Constant extends Expression {
+
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object eval(Event event) {
+            return value;
+        }
+    }
+
+    /**
+     * String containing {field}, missing fields are left as is
+     */
+    private static final class Template extends Expression {
+
+        private final StringTemplate template;
+
+        Template(StringTemplate template) {
+            this.template = template;
+        }
+
+        @Override
+        Object eval(Event event) {
+            String value = template.render(event);
+            return value != null ? value : template.original();
+        }
+    }
+
+    private static final class ArrayLiteral extends Expression {
+
+        private final Expression[] elements;
+
+        ArrayLiteral(List<Expression> elements) {
+            this.elements = elements.toArray(new Expression[elements.size()]);
+        }
+
+        @Override
+        Object eval(Event event) {
+            List<Object> values = new ArrayList<>(elements.length);
+            for (Expression element : elements) {
+                values.add(element.eval(event));
+            }
+            return values;
+        }
+    }
+
+    private static final class Not extends Expression {
+
+        private final Expression operand;
+
+        Not(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Object eval(Event event) {
+            return !isTrue(operand.eval(event));
+        }
+    }
+
+    private static final class Negate extends Expression {
+
+        private final Expression operand;
+
+        Negate(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Object eval(Event event) {
+            return -toNumber(operand.eval(event));
+        }
+    }
+
+    private static final class And extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        And(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object eval(Event event) {
+            return isTrue(left.eval(event)) && isTrue(right.eval(event));
+        }
+    }
+
+    private static final class Or extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        Or(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object eval(Event event) {
+            return isTrue(left.eval(event)) || isTrue(right.eval(event));
+        }
+    }
+
+    private static final class Binary extends Expression {
+
+        private final String operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(String operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object eval(Event event) {
+            Object a = left.eval(event);
+            Object b = right.eval(event);
+            switch (operator) {
+                case "==":  return looseEquals(a, b);
+                case "!=":  return !looseEquals(a, b);
+                case "===": return strictEquals(a, b);
+                case "!==": return !strictEquals(a, b);
+                case "<":   { Integer c = compare(a, b); return c != null && c < 0; }
+                case "<=":  { Integer c = compare(a, b); return c != null && c <= 0; }
+                case ">":   { Integer c = compare(a, b); return c != null && c > 0; }
+                case ">=":  { Integer c = compare(a, b); return c != null && c >= 0; }
+                case "+":
+                    if (a instanceof String || b instanceof String) {
+                        return asString(a) + asString(b);
+                    }
+                    return toNumber(a) + toNumber(b);
+                case "-":   return toNumber(a) - toNumber(b);
+                case "*":   return toNumber(a) * toNumber(b);
+                case "/":   return toNumber(a) / toNumber(b);
+                case "%":   return toNumber(a) % toNumber(b);
+                default:
+                    throw new IllegalStateException("Unsupported operator " + operator);
+            }
+        }
+    }
+
+    /**
+     * =~, !~ and matches(), the pattern is compiled once if it is a constant.
+     */
+    private static final class Match extends Expression {
+
+        private final Expression target;
+        private final Expression regex;
+        private final Pattern constant;
+        private final boolean find;
+        private final boolean negate;
+
+        Match(Expression target, Expression regex, boolean find, boolean negate) {
+            this.target = target;
+            this.regex = regex;
+            this.find = find;
+            this.negate = negate;
+            this.constant = regex instanceof Constant ?
+                    Pattern.compile(asString(((Constant) regex).value)) : null;
+        }
+
+        @Override
+        Object eval(Event event) {
+            Object value = target.eval(event);
+            if (value == null) {
+                return negate;
+            }
+            Pattern pattern = constant != null ? constant : Pattern.compile(asString(regex.eval(event)));
+            Matcher matcher = pattern.matcher(asString(value));
+            return (find ? matcher.find() : matcher.matches()) != negate;
+        }
+    }
+
+    private static final class MethodCall extends Expression {
+
+        private final String method;
+        private final Expression target;
+        private final Expression argument;
+
+        MethodCall(String method, Expression target, Expression argument) {
+            this.method = method;
+            this.target = target;
+            this.argument = argument;
+        }
+
+        @Override
+        Object eval(Event event) {
+            Object value = target.eval(event);
+            if (value == null) {
+                return false;
+            }
+            Object arg = argument.eval(event);
+            switch (method) {
+                case "contains":
+                    if (!(value instanceof Iterable)) {
+                        throw new IllegalStateException("contains() requires an array but " + target +
+                                " is " + asString(value));
+                    }
+                    Iterator<?> it = ((Iterable<?>) value).iterator();
+                    while (it.hasNext()) {
+                        if (looseEquals(fromObject(it.next()), arg)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case "startsWith":
+                    return asString(value).startsWith(asString(arg));
+                case "endsWith":
+                    return asString(value).endsWith(asString(arg));
+                default:
+                    throw new IllegalStateException("Unsupported method " + method);
+            }
+        }
+    }
+
+
+    /**
+     * Recursive descent parser, precedence from lowest to highest:
+     * ||, &&, equality, relational, + -, * / %, unary ! -, method calls.
+     */
+    private static final class Parser {
+
+        private final String source;
+        private final List<FieldRef> fields;
+        private int pos = 0;
+
+        Parser(String source, List<FieldRef> fields) {
+            this.source = source;
+            this.fields = fields;
+        }
+
+        Expression parse() {
+            Expression expression = or();
+            skipWhitespace();
+            if (pos < source.length()) {
+                throw error("Unexpected '" + source.charAt(pos) + "'");
+            }
+            return expression;
+        }
+
+        private Expression or() {
+            Expression left = and();
+            while (accept("||")) {
+                left = new Or(left, and());
+            }
+            return left;
+        }
+
+        private Expression and() {
+            Expression left = equality();
+            while (accept("&&")) {
+                left = new And(left, equality());
+            }
+            return left;
+        }
+
+        private Expression equality() {
+            Expression left = relational();
+            while (true) {
+                if (accept("===")) {
+                    left = new Binary("===", left, relational());
+                } else if (accept("!==")) {
+                    left = new Binary("!==", left, relational());
+                } else if (accept("==")) {
+                    left = new Binary("==", left, relational());
+                } else if (accept("!=")) {
+                    left = new Binary("!=", left, relational());
+                } else if (accept("=~")) {
+                    left = new Match(left, relational(), true, false);
+                } else if (accept("!~")) {
+                    left = new Match(left, relational(), true, true);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression relational() {
+            Expression left = additive();
+            while (true) {
+                if (accept("<=")) {
+                    left = new Binary("<=", left, additive());
+                } else if (accept(">=")) {
+                    left = new Binary(">=", left, additive());
+                } else if (accept("<")) {
+                    left = new Binary("<", left, additive());
+                } else if (accept(">")) {
+                    left = new Binary(">", left, additive());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression additive() {
+            Expression left = multiplicative();
+            while (true) {
+                if (accept("+")) {
+                    left = new Binary("+", left, multiplicative());
+                } else if (accept("-")) {
+                    left = new Binary("-", left, multiplicative());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression multiplicative() {
+            Expression left = unary();
+            while (true) {
+                if (accept("*")) {
+                    left = new Binary("*", left, unary());
+                } else if (accept("/")) {
+                    left = new Binary("/", left, unary());
+                } else if (accept("%")) {
+                    left = new Binary("%", left, unary());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression unary() {
+            skipWhitespace();
+            if (peek('!') && !source.startsWith("!=", pos) && !source.startsWith("!~", pos)) {
+                pos++;
+                return new Not(unary());
+            }
+            if (peek('-')) {
+                pos++;
+                return new Negate(unary());
+            }
+            return postfix();
+        }
+
+        private Expression postfix() {
+            Expression target = primary();
+            while (accept(".")) {
+                String method = identifier();
+                expect("(");
+                Expression argument = or();
+                expect(")");
+                if (method.equals("matches")) {
+                    target = new Match(target, argument, false, false);
+                } else if (method.equals("contains") || method.equals("startsWith") || method.equals("endsWith")) {
+                    target = new MethodCall(method, target, argument);
+                } else {
+                    throw error("Unsupported method " + method);
+                }
+            }
+            return target;
+        }
+
+        private Expression primary() {
+            skipWhitespace();
+            if (pos >= source.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = source.charAt(pos);
+            if (c == '(') {
+                pos++;
+                Expression expression = or();
+                expect(")");
+                return expression;
+            }
+            if (c == '{') {
+                int end = source.indexOf('}', pos);
+                if (end == -1) {
+                    throw error("Missing }");
+                }
+                FieldRef field = new FieldRef(source.substring(pos + 1, end));
+                fields.add(field);
+                pos = end + 1;
+                return field;
+            }
+            if (c == '\'' || c == '"') {
+                return string(c);
+            }
+            if (c == '[') {
+                pos++;
+                List<Expression> elements = new ArrayList<>();
+                if (!accept("]")) {
+                    do {
+                        elements.add(or());
+                    } while (accept(","));
+                    expect("]");
+                }
+                return new ArrayLiteral(elements);
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return number();
+            }
+            if (Character.isLetter(c)) {
+                String identifier = identifier();
+                switch (identifier) {
+                    case "true":      return new Constant(true);
+                    case "false":     return new Constant(false);
+                    case "null":
+                    case "undefined": return new Constant(null);
+                    default:
+                        throw error("Unknown identifier " + identifier);
+                }
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+
+        private Expression string(char quote) {
+            StringBuilder sb = new StringBuilder();
+            pos++;
+            while (pos < source.length() && source.charAt(pos) != quote) {
+                char c = source.charAt(pos++);
+                if (c == '\\' && pos < source.length()) {
+                    c = source.charAt(pos++);
+                }
+                sb.append(c);
+            }
+            if (pos >= source.length()) {
+                throw error("Unterminated string");
+            }
+            pos++;
+            String value = sb.toString();
+            if (value.indexOf('{') == -1) {
+                return new Constant(value);
+            }
+            for (int start = value.indexOf('{'); start != -1; start = value.indexOf('{', start + 1)) {
+                int end = value.indexOf('}', start);
+                if (end > start + 1) {
+                    fields.add(new FieldRef(value.substring(start + 1, end)));
+                }
+            }
+            return new Template(StringTemplate.compile(value));
+        }
+
+        private Expression number() {
+            int start = pos;
+            while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.'
+                    || source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+                pos++;
+            }
+            try {
+                return new Constant(Double.parseDouble(source.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number " + source.substring(start, pos));
+            }
+        }
+
+        private String identifier() {
+            skipWhitespace();
+            int start = pos;
+            while (pos < source.length() && Character.isLetterOrDigit(source.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("Expected identifier");
+            }
+            return source.substring(start, pos);
+        }
+
+        private boolean peek(char c) {
+            return pos < source.length() && source.charAt(pos) == c;
+        }
+
+        private boolean accept(String token) {
+            skipWhitespace();
+            if (source.startsWith(token, pos)) {
+                // Do not mistake the start of a longer operator, e.g. = in ==
+                if (token.length() == 1 && "<>=!".indexOf(token.charAt(0)) != -1
+                        && pos + 1 < source.length() && source.charAt(pos + 1) == '=') {
+                    return false;
+                }
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw error("Expected '" + token + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalStateException error(String message) {
+            return new IllegalStateException("BooleanExpression is invalid: " + message +
+                    " at position " + pos + " in " + source);
+        }
+    }
+}
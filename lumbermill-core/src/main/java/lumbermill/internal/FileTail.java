@@ -0,0 +1,402 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import lumbermill.api.Codec;
+import lumbermill.api.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows one or more files and emits appended lines, use File.tail() to create.
+ *
+ * All files are polled by a single thread so the number of threads does not depend on the
+ * number of files. Lines are handed to the pipeline in batches and the offset of a batch is
+ * written to the sincedb only when the pipeline has completed, if it fails the batch is read
+ * again on the next poll (at least once delivery).
+ *
+ * Files are identified by their file key (device and inode where supported). A file renamed
+ * to a name that no longer matches is read to the end and closed, one renamed to a name that
+ * still matches keeps being tailed from the same position, it is never opened twice. A file
+ * that is smaller than the current offset is considered truncated and is read from the beginning.
+ */
+public class FileTail<E extends Event> implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTail.class);
+
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final String glob;
+    private final SinceDb sinceDb;
+    private final Codec<E> codec;
+    private final long intervalMillis;
+    private final boolean fromBeginning;
+    private final int batchSize;
+
+    /**
+     * Open files matching the glob by file key, a renamed file that still matches keeps its entry
+     */
+    private final Map<String, Tailed> files = new LinkedHashMap<>();
+
+    /**
+     * Files that were renamed (rotated) and are read to the end before they are closed
+     */
+    private final List<Tailed> rotated = new ArrayList<>();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private boolean started;
+    private volatile boolean running;
+    private Thread thread;
+
+    public FileTail(String path, String sinceDb, Codec<E> codec, long intervalMillis,
+                    boolean fromBeginning, int batchSize) {
+        Path file = Paths.get(path).toAbsolutePath();
+        this.directory = file.getParent();
+        this.glob = file.getFileName().toString();
+        this.sinceDb = SinceDb.load(Paths.get(sinceDb));
+        this.codec = codec;
+        this.intervalMillis = intervalMillis;
+        this.fromBeginning = fromBeginning;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts following the files, each batch of events is passed to the pipeline on the tail
+     * thread and the offset is checkpointed when the returned observable completes.
+     */
+    public synchronized FileTail<E> on(Func1<Observable<E>, ? extends Observable<?>> pipeline) {
+        if (thread != null) {
+            throw new IllegalStateException("Tail of " + directory.resolve(glob) + " is already started");
+        }
+        running = true;
+        thread = new Thread(() -> {
+            while (running) {
+                try {
+                    poll(pipeline);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to tail " + directory.resolve(glob), e);
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }, "lumbermill-tail");
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Stops the tail thread and closes all files, offsets are already checkpointed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Thread current;
+        synchronized (this) {
+            current = thread;
+        }
+        if (current != null && current != Thread.currentThread()) {
+            current.interrupt();
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        files.values().forEach(Tailed::close);
+        rotated.forEach(Tailed::close);
+        files.clear();
+        rotated.clear();
+    }
+
+    /**
+     * Reads everything appended to the files since last poll
+     */
+    void poll(Func1<Observable<E>, ? extends Observable<?>> pipeline) {
+        try {
+            Set<String> live = discover();
+            rotated.forEach(tailed -> live.add(tailed.key));
+            // Files deleted or rotated away, also while not running, are never seen again
+            sinceDb.retain(live);
+            for (Iterator<Tailed> it = rotated.iterator(); it.hasNext();) {
+                Tailed tailed = it.next();
+                if (tryRead(tailed, pipeline)) {
+                    LOGGER.info("Done reading rotated file {}", tailed.path);
+                    sinceDb.remove(tailed.key);
+                    tailed.close();
+                    it.remove();
+                }
+            }
+            for (Tailed tailed : files.values()) {
+                tryRead(tailed, pipeline);
+            }
+            started = true;
+        } finally {
+            // Offsets of files that were read are kept even if another file failed
+            sinceDb.write();
+        }
+    }
+
+    /**
+     * A failure in one file does not stop the other files from being read
+     */
+    private boolean tryRead(Tailed tailed, Func1<Observable<E>, ? extends Observable<?>> pipeline) {
+        try {
+            return read(tailed, pipeline);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to read " + tailed.path + ", retrying from offset " + tailed.checkpoint, e);
+            tailed.position = tailed.checkpoint;
+            return false;
+        }
+    }
+
+    /**
+     * Opens new files matching the glob and detects rotation and truncation of open files.
+     * Returns the keys of all files matching the glob.
+     */
+    private Set<String> discover() {
+        Set<String> found = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    discover(path, found);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("Directory {} does not exist", directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to list " + directory, e);
+        }
+        for (Iterator<Tailed> it = files.values().iterator(); it.hasNext();) {
+            Tailed tailed = it.next();
+            if (!found.contains(tailed.key)) {
+                LOGGER.info("File {} was moved or removed, reading remaining lines", tailed.path);
+                rotated.add(tailed);
+                it.remove();
+            }
+        }
+        return found;
+    }
+
+    private void discover(Path path, Set<String> found) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read attributes of {}: {}", path, e.getMessage());
+            return;
+        }
+        String key = attributes.fileKey() != null ? attributes.fileKey().toString() : path.toString();
+        if (!found.add(key)) {
+            // Another link to a file that is already tailed
+            return;
+        }
+        Tailed tailed = files.get(key);
+        if (tailed == null) {
+            tailed = removeRotated(key);
+            if (tailed != null) {
+                files.put(key, tailed);
+            }
+        }
+        if (tailed == null) {
+            open(path, key, attributes.size());
+            return;
+        }
+        if (!tailed.path.equals(path)) {
+            // Renamed to a name that also matches, keep reading it from the same channel
+            LOGGER.info("File {} was renamed to {}", tailed.path, path);
+            tailed.path = path;
+            sinceDb.update(key, path, tailed.checkpoint);
+        }
+        if (attributes.size() < tailed.position) {
+            LOGGER.info("File {} was truncated, reading from beginning", path);
+            tailed.position = 0;
+            tailed.checkpoint = 0;
+            sinceDb.update(key, path, 0);
+        }
+    }
+
+    private Tailed removeRotated(String key) {
+        for (Iterator<Tailed> it = rotated.iterator(); it.hasNext();) {
+            Tailed tailed = it.next();
+            if (tailed.key.equals(key)) {
+                it.remove();
+                return tailed;
+            }
+        }
+        return null;
+    }
+
+    private void open(Path path, String key, long size) {
+        long offset = sinceDb.offset(key);
+        if (offset > size) {
+            LOGGER.info("File {} is smaller than its sincedb offset, reading from beginning", path);
+            offset = 0;
+        } else if (offset < 0) {
+            // Files that exist when starting are only read from the beginning if configured,
+            // files created later are always read from the beginning
+            offset = started || fromBeginning ? 0 : size;
+        }
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            files.put(key, new Tailed(path, key, channel, offset));
+            sinceDb.update(key, path, offset);
+            LOGGER.info("Tailing {} from offset {}", path, offset);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to open {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads complete lines until end of file, returns true if end of file was reached
+     * without any failure.
+     */
+    private boolean read(Tailed tailed, Func1<Observable<E>, ? extends Observable<?>> pipeline) {
+        List<E> batch = new ArrayList<>(Math.min(batchSize, 1024));
+        while (true) {
+            buffer.clear();
+            int read;
+            try {
+                read = tailed.channel.read(buffer, tailed.position);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read {}: {}", tailed.path, e.getMessage());
+                return false;
+            }
+            if (read <= 0) {
+                return emit(tailed, batch, pipeline);
+            }
+            buffer.flip();
+            byte[] bytes = buffer.array();
+            int limit = buffer.limit();
+            int start = 0;
+            boolean full = false;
+            for (int i = 0; i < limit && !full; i++) {
+                if (bytes[i] == '\n') {
+                    int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+                    decode(tailed, new String(bytes, start, end - start, StandardCharsets.UTF_8), batch);
+                    start = i + 1;
+                    full = batch.size() >= batchSize;
+                }
+            }
+            tailed.position += start;
+            if (full) {
+                if (!emit(tailed, batch, pipeline)) {
+                    return false;
+                }
+                batch.clear();
+            } else if (start == 0 && limit == buffer.capacity()) {
+                // A line longer than the buffer, grow it and read again
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            } else if (limit < buffer.capacity()) {
+                // End of file, a partial last line is read when completed
+                return emit(tailed, batch, pipeline);
+            }
+        }
+    }
+
+    /**
+     * Lines that the codec fails to decode are logged and skipped, so they do not stop the file
+     */
+    private void decode(Tailed tailed, String line, List<E> batch) {
+        try {
+            batch.add(codec.from(line));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Skipping line in {} that could not be decoded with {}: {}", tailed.path, codec, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the pipeline and checkpoints if successful, on failure the file is rewound to
+     * last checkpoint.
+     */
+    private boolean emit(Tailed tailed, List<E> batch, Func1<Observable<E>, ? extends Observable<?>> pipeline) {
+        if (!batch.isEmpty()) {
+            try {
+                pipeline.call(Observable.from(new ArrayList<>(batch))).toBlocking().lastOrDefault(null);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Pipeline failed for {} lines from {}, retrying from offset {}",
+                        batch.size(), tailed.path, tailed.checkpoint, e);
+                tailed.position = tailed.checkpoint;
+                return false;
+            }
+        }
+        tailed.checkpoint = tailed.position;
+        sinceDb.update(tailed.key, tailed.path, tailed.checkpoint);
+        return true;
+    }
+
+    private static final class Tailed {
+
+        /**
+         * Current name of the file, changes if renamed to a name that matches the glob
+         */
+        Path path;
+        final String key;
+        final FileChannel channel;
+
+        /**
+         * Position of next byte to read
+         */
+        long position;
+
+        /**
+         * Position of the last line that the pipeline has completed
+         */
+        long checkpoint;
+
+        Tailed(Path path, String key, FileChannel channel, long position) {
+            this.path = path;
+            this.key = key;
+            this.channel = channel;
+            this.position = position;
+            this.checkpoint = position;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,21 +1,168 @@
 package lumbermill.internal;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import okio.Buffer;
 import okio.ByteString;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 
 public class Json {
 
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    public static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    public static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+    /**
+     * Parses the bytes as UTF-8 json without first decoding them into a String. Jackson
+     * recycles its parser buffers per thread so no parser state is kept here.
+     */
     public static JsonNode parse(ByteString string) {
+        return parse(OBJECT_MAPPER, string);
+    }
+
+    /**
+     * Parses the bytes with the format of the specified mapper, e.g. SMILE_MAPPER.
+     */
+    public static JsonNode parse(ObjectMapper mapper, ByteString bytes) {
+        try {
+            return mapper.readTree(new ByteBufferInputStream(bytes.asByteBuffer()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Serializes the node with the format of the specified mapper without any
+     * intermediate String or byte array.
+     */
+    public static ByteString write(ObjectMapper mapper, JsonNode node) {
+        Buffer buffer = new Buffer();
         try {
-            return OBJECT_MAPPER.readTree(string.utf8());
+            mapper.writeValue(buffer.outputStream(), node);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        return buffer.readByteString();
+    }
+
+    /**
+     * Parses the bytes as UTF-8 json, the array is neither copied nor modified.
+     */
+    public static JsonNode parse(byte[] bytes) {
+        try {
+            return OBJECT_MAPPER.readTree(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Iterates over each json object in either newline delimited json (or any whitespace
+     * separated sequence of objects) or a json array of objects. Objects are parsed one at
+     * a time when the iterator advances so the complete payload is never held as a single tree.
+     */
+    public static Iterable<ObjectNode> eachObject(ByteString json) {
+        return () -> new ObjectIterator(json);
+    }
+
+    private static final class ObjectIterator implements Iterator<ObjectNode> {
+
+        private final JsonParser parser;
+        private boolean insideArray = false;
+        private ObjectNode next;
+
+        ObjectIterator(ByteString json) {
+            try {
+                this.parser = OBJECT_MAPPER.getFactory().createParser(
+                        new ByteBufferInputStream(json.asByteBuffer()));
+                JsonToken first = parser.nextToken();
+                if (first == JsonToken.START_ARRAY) {
+                    insideArray = true;
+                    parser.nextToken();
+                }
+                advance();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void advance() throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token == null || (insideArray && token == JsonToken.END_ARRAY)) {
+                next = null;
+                parser.close();
+                return;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("Expected json object but found " + token +
+                        " at " + parser.getCurrentLocation());
+            }
+            next = OBJECT_MAPPER.readTree(parser);
+            parser.nextToken();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ObjectNode next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            ObjectNode current = next;
+            try {
+                advance();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Exposes a read-only view of ByteString contents to Jackson's byte based parser.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import okio.ByteString;
+
+import java.io.File;
+
+/**
+ * LZ4 compression, very fast with a lower ratio than zlib. Uses the native library bundled with
+ * lz4-java when it can be loaded, otherwise the pure java implementation.
+ *
+ * A compressed event is the uncompressed length as a 4 byte big endian int followed by an LZ4
+ * block. Files are written in the lz4-java block stream format (LZ4BlockOutputStream).
+ */
+public final class Lz4Compression {
+
+    /**
+     * Level 0 is the fast compressor, 1-17 uses the high compression compressor
+     */
+    public static final int FAST = 0;
+    public static final int MAX_LEVEL = 17;
+
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = FACTORY.safeDecompressor();
+
+    private static final int LENGTH_SIZE = 4;
+    private static final int MAX_RATIO = 255;
+
+    private Lz4Compression() {}
+
+    public static int level(int level) {
+        if (level < FAST || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("LZ4 level must be 0 (fast) to " + MAX_LEVEL + ", was " + level);
+        }
+        return level;
+    }
+
+    public static ByteString compress(ByteString bytes, int level) {
+        byte[] data = bytes.toByteArray();
+        LZ4Compressor compressor = compressor(level);
+        byte[] out = Compression.buffer(LENGTH_SIZE + compressor.maxCompressedLength(data.length));
+        writeInt(out, data.length);
+        int size = compressor.compress(data, 0, data.length, out, LENGTH_SIZE, out.length - LENGTH_SIZE);
+        return ByteString.of(out, 0, LENGTH_SIZE + size);
+    }
+
+    public static ByteString decompress(ByteString bytes) {
+        byte[] data = bytes.toByteArray();
+        if (data.length < LENGTH_SIZE) {
+            throw new IllegalStateException("Not in lz4 format, too short");
+        }
+        // An LZ4 block can not expand more than 255 times
+        int length = Compression.checkDecompressedSize("lz4", readInt(data), data.length, MAX_RATIO);
+        byte[] out = Compression.buffer(length);
+        try {
+            int size = DECOMPRESSOR.decompress(data, LENGTH_SIZE, data.length - LENGTH_SIZE, out, 0, length);
+            if (size != length) {
+                throw new IllegalStateException("Corrupt lz4 data, expected " + length + " bytes but was " + size);
+            }
+        } catch (LZ4Exception e) {
+            throw new IllegalStateException("Corrupt lz4 data", e);
+        }
+        return ByteString.of(out, 0, length);
+    }
+
+    public static File compress(File file, int level) {
+        return Streams.copyToTempFile(file, ".lz4",
+                in -> in, out -> new LZ4BlockOutputStream(out, 64 * 1024, compressor(level)));
+    }
+
+    public static File decompress(File file) {
+        return Streams.copyToTempFile(file, ".unlz4",
+                in -> new LZ4BlockInputStream(in, FACTORY.fastDecompressor()), out -> out);
+    }
+
+    private static LZ4Compressor compressor(int level) {
+        return level == FAST ? FACTORY.fastCompressor() : FACTORY.highCompressor(level);
+    }
+
+    private static void writeInt(byte[] data, int value) {
+        data[0] = (byte) (value >>> 24);
+        data[1] = (byte) (value >>> 16);
+        data[2] = (byte) (value >>> 8);
+        data[3] = (byte) value;
+    }
+
+    private static int readInt(byte[] data) {
+        return (data[0] & 0xff) << 24 | (data[1] & 0xff) << 16 | (data[2] & 0xff) << 8 | (data[3] & 0xff);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import lumbermill.api.Codec;
+import lumbermill.api.Event;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the lines of a local file by memory mapping it and splitting it into chunks that end
+ * at a line terminator. Chunks are decoded in parallel on the computation scheduler, lines are
+ * UTF-8 and end with \n, \r or \r\n like BufferedReader.readLine().
+ *
+ * When ordered the lines are emitted in file order, otherwise each chunk is emitted as soon
+ * as it is decoded. At most parallelism chunks are decoded and buffered at the same time.
+ */
+public final class MappedLines {
+
+    /**
+     * Large enough to amortize the scheduling, small enough that the decoded events of the
+     * chunks in flight are collected young
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Size of the reads used to find the newline after a chunk boundary
+     */
+    private static final int SCAN_SIZE = 8 * 1024;
+
+    private MappedLines() {
+    }
+
+    public static <E extends Event> Observable<E> lines(String file, Codec<E> codec, int parallelism,
+                                                       boolean ordered, int chunkSize) {
+        return Observable.using(
+                () -> open(file),
+                channel -> {
+                    Observable<Chunk> chunks = Observable.from(split(channel, chunkSize));
+                    if (ordered) {
+                        return chunks.concatMapEager(chunk -> decode(channel, chunk, codec), parallelism, parallelism)
+                                .flatMapIterable(events -> events);
+                    }
+                    return chunks.flatMap(chunk -> decode(channel, chunk, codec), parallelism)
+                            .flatMapIterable(events -> events);
+                },
+                MappedLines::close);
+    }
+
+    private static <E extends Event> Observable<List<E>> decode(FileChannel channel, Chunk chunk, Codec<E> codec) {
+        return Observable.fromCallable(() -> chunk.decode(channel, codec))
+                .subscribeOn(Schedulers.computation());
+    }
+
+    /**
+     * Splits the file into chunks of about chunkSize bytes, each chunk except the last ends
+     * with a line terminator.
+     */
+    static List<Chunk> split(FileChannel channel, int chunkSize) {
+        try {
+            return split(channel, chunkSize, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Chunk> split(FileChannel channel, int chunkSize, long size) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextLine(channel, start + chunkSize, size, scan);
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Position after the first line terminator at or after pos, or size if there is none.
+     * A \r\n is never split between two chunks.
+     */
+    private static long nextLine(FileChannel channel, long pos, long size, ByteBuffer scan) throws IOException {
+        while (pos < size) {
+            scan.clear();
+            int read = channel.read(scan, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = scan.get(i);
+                if (b == '\n') {
+                    return pos + i + 1;
+                }
+                if (b == '\r') {
+                    if (i + 1 < read) {
+                        return pos + i + (scan.get(i + 1) == '\n' ? 2 : 1);
+                    }
+                    // \r is the last byte read, the next read starts at it to see what follows
+                    if (i > 0) {
+                        break;
+                    }
+                    return pos + 1;
+                }
+            }
+            pos += scan.get(read - 1) == '\r' && read > 1 ? read - 1 : read;
+        }
+        return size;
+    }
+
+    private static FileChannel open(String file) {
+        try {
+            return FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static final class Chunk {
+        final long start;
+        final long end;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Lines without line terminator, same as BufferedReader.readLine(). Line ends are found
+         * with absolute reads of the mapping and only one line at a time is copied to the heap.
+         */
+        <E extends Event> List<E> decode(FileChannel channel, Codec<E> codec) throws IOException {
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Line too long to be mapped at offset " + start);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            int limit = mapped.limit();
+            byte[] line = new byte[256];
+            List<E> events = new ArrayList<>();
+            int lineStart = 0;
+            for (int i = 0; i <= limit; i++) {
+                byte b = i == limit ? 0 : mapped.get(i);
+                if (i == limit ? lineStart < i : b == '\n' || b == '\r') {
+                    int length = i - lineStart;
+                    if (length > line.length) {
+                        line = new byte[Math.max(length, line.length * 2)];
+                    }
+                    mapped.position(lineStart);
+                    mapped.get(line, 0, length);
+                    events.add(codec.from(new String(line, 0, length, StandardCharsets.UTF_8)));
+                    if (b == '\r' && i + 1 < limit && mapped.get(i + 1) == '\n') {
+                        i++;
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            return events;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk{" + start + "-" + end + '}';
+        }
+    }
+}
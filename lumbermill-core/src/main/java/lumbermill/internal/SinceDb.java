@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read offsets of tailed files, keyed by file identity (device and inode where the file system
+ * supports it) so that a renamed file keeps its offset. Stored as one line per file:
+ *
+ *  key TAB offset TAB path
+ *
+ * The file is replaced atomically each time it is written. Entries of files that no longer
+ * exist are dropped with retain(), otherwise rotated files would accumulate. Not thread safe.
+ */
+final class SinceDb {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SinceDb.class);
+
+    private final Path file;
+    private final Map<String, Long> offsets = new HashMap<>();
+    private final Map<String, String> paths = new HashMap<>();
+    private boolean dirty;
+
+    private SinceDb(Path file) {
+        this.file = file;
+    }
+
+    static SinceDb load(Path file) {
+        SinceDb db = new SinceDb(file);
+        if (!Files.exists(file)) {
+            return db;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length == 3) {
+                    db.offsets.put(parts[0], Long.parseLong(parts[1]));
+                    db.paths.put(parts[0], parts[2]);
+                } else if (!line.isEmpty()) {
+                    LOGGER.warn("Ignoring invalid line in sincedb {}: {}", file, line);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Failed to read sincedb " + file, e);
+        }
+        return db;
+    }
+
+    /**
+     * Returns -1 if the file has no offset
+     */
+    long offset(String key) {
+        Long offset = offsets.get(key);
+        return offset == null ? -1 : offset;
+    }
+
+    void update(String key, Path path, long offset) {
+        Long previous = offsets.put(key, offset);
+        paths.put(key, path.toString());
+        dirty |= previous == null || previous != offset;
+    }
+
+    void remove(String key) {
+        dirty |= offsets.remove(key) != null;
+        paths.remove(key);
+    }
+
+    /**
+     * Drops the entries of all files except the live ones
+     */
+    void retain(Set<String> keys) {
+        if (offsets.keySet().removeIf(key -> !keys.contains(key))) {
+            paths.keySet().retainAll(offsets.keySet());
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the offsets if any has changed since last write
+     */
+    void write() {
+        if (!dirty) {
+            return;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                    writer.write(entry.getKey() + '\t' + entry.getValue() + '\t' + paths.get(entry.getKey()));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write sincedb " + file, e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal map for event metadata which almost always holds only a few keys.
+ *
+ * Up to four entries are stored inline in a single array as key, value, key, value...
+ * and lookups are linear scans. More entries than that moves everything into a HashMap.
+ *
+ * Not thread safe, same as the events using it.
+ */
+public final class SmallMap {
+
+    private static final int MAX_INLINE_ENTRIES = 4;
+
+    private Object[] entries = new Object[4];
+
+    private int size = 0;
+
+    private Map<String, Object> overflow;
+
+    public <T> T get(String key) {
+        if (overflow != null) {
+            return (T) overflow.get(key);
+        }
+        int index = indexOf(key);
+        return index == -1 ? null : (T) entries[index + 1];
+    }
+
+    public boolean containsKey(String key) {
+        return overflow != null ? overflow.containsKey(key) : indexOf(key) != -1;
+    }
+
+    public SmallMap put(String key, Object value) {
+        if (overflow != null) {
+            overflow.put(key, value);
+            return this;
+        }
+        int index = indexOf(key);
+        if (index != -1) {
+            entries[index + 1] = value;
+            return this;
+        }
+        if (size == MAX_INLINE_ENTRIES) {
+            overflow = toHashMap();
+            overflow.put(key, value);
+            entries = null;
+            return this;
+        }
+        if (size * 2 == entries.length) {
+            Object[] grown = new Object[MAX_INLINE_ENTRIES * 2];
+            System.arraycopy(entries, 0, grown, 0, entries.length);
+            entries = grown;
+        }
+        entries[size * 2] = key;
+        entries[size * 2 + 1] = value;
+        size++;
+        return this;
+    }
+
+    public int size() {
+        return overflow != null ? overflow.size() : size;
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < size * 2; i += 2) {
+            if (key.equals(entries[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Map<String, Object> toHashMap() {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < size * 2; i += 2) {
+            map.put((String) entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        if (overflow != null) {
+            return overflow.toString();
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size * 2; i += 2) {
+            sb.append(i == 0 ? "" : ", ").append(entries[i]).append('=').append(entries[i + 1]);
+        }
+        return sb.append('}').toString();
+    }
+}
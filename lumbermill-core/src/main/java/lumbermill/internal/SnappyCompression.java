@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import okio.ByteString;
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+import org.iq80.snappy.SnappyFramedInputStream;
+import org.iq80.snappy.SnappyFramedOutputStream;
+
+import java.io.File;
+
+/**
+ * Snappy compression with the pure java implementation from iq80, no native library required.
+ *
+ * A compressed event is a raw snappy block, which includes the uncompressed length. Files are
+ * written in the snappy framing format.
+ */
+public final class SnappyCompression {
+
+    /**
+     * The best a snappy copy can do is 64 bytes from 3 bytes
+     */
+    private static final int MAX_RATIO = 32;
+
+    private SnappyCompression() {}
+
+    public static ByteString compress(ByteString bytes) {
+        byte[] data = bytes.toByteArray();
+        byte[] out = Compression.buffer(Snappy.maxCompressedLength(data.length));
+        int size = Snappy.compress(data, 0, data.length, out, 0);
+        return ByteString.of(out, 0, size);
+    }
+
+    public static ByteString decompress(ByteString bytes) {
+        byte[] data = bytes.toByteArray();
+        try {
+            int length = Compression.checkDecompressedSize("snappy",
+                    Snappy.getUncompressedLength(data, 0), data.length, MAX_RATIO);
+            byte[] out = Compression.buffer(length);
+            int size = Snappy.uncompress(data, 0, data.length, out, 0);
+            return ByteString.of(out, 0, size);
+        } catch (CorruptionException e) {
+            throw new IllegalStateException("Corrupt snappy data", e);
+        }
+    }
+
+    public static File compress(File file) {
+        return Streams.copyToTempFile(file, ".snappy", in -> in, SnappyFramedOutputStream::new);
+    }
+
+    public static File decompress(File file) {
+        return Streams.copyToTempFile(file, ".unsnappy", in -> new SnappyFramedInputStream(in, true), out -> out);
+    }
+}
@@ -16,26 +16,25 @@ package lumbermill.internal;
 
 import okio.ByteString;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.stream.Stream;
-import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
-import java.util.zip.Inflater;
 import java.util.zip.ZipInputStream;
 
 import static okio.Okio.buffer;
@@ -47,6 +46,12 @@ import static okio.Okio.source;
  */
 public class Streams {
 
+    private static final int LINE_BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
     public static void copy(InputStream is, OutputStream out) {
         try {
             buffer(source(is)).readAll(sink(out));
@@ -70,67 +75,85 @@ public class Streams {
     }
 
     /**
-     * Forwards to Files.lines() but catches the exception. However,
-     * the client MUST close the stream or use try-with-resources.
+     * Lines are read lazily as the stream is consumed, the client MUST close the stream
+     * or use try-with-resources. Gzip compressed files are decompressed while reading.
      */
     public static Stream<String> lines(String file)  {
-
-        List<String> lines = new ArrayList<>();
-
         try {
-            try (BufferedReader r = new BufferedReader(
-                    new FileReader(new File(file)))) {
-                String line = null;
-                while ((line = r.readLine()) != null) {
-                    lines.add(line);
-                }
-            }
-        } catch (IOException e) {
+            return lines(new FileInputStream(file));
+        } catch (FileNotFoundException e) {
             throw new IllegalStateException(e);
         }
-        return lines.stream();
     }
 
-    public static ByteString gzip(ByteString bytes) {
+    /**
+     * Same as lines(String) but reads from the stream, which is closed when the returned stream is closed.
+     */
+    public static Stream<String> lines(InputStream in)  {
         try {
-            ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out);
-            Streams.copy(in, gzipOutputStream);
-            gzipOutputStream.close();
-            return ByteString.of(out.toByteArray());
-        } catch (FileNotFoundException e) {
-            throw new IllegalStateException(e);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(gunzipIfCompressed(in), StandardCharsets.UTF_8), LINE_BUFFER_SIZE);
+            return reader.lines().onClose(() -> close(reader));
         } catch (IOException e) {
+            close(in);
             throw new IllegalStateException(e);
         }
     }
 
-    public static ByteString gunzip(ByteString bytes) {
+    /**
+     * Returns a stream that decompresses the contents if it starts with the gzip magic bytes,
+     * otherwise a stream with the contents as is.
+     */
+    public static InputStream gunzipIfCompressed(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, GZIP_BUFFER_SIZE);
+        buffered.mark(2);
+        boolean gzip = buffered.read() == GZIP_MAGIC_1 && buffered.read() == GZIP_MAGIC_2;
+        buffered.reset();
+        return gzip ? new GZIPInputStream(buffered, GZIP_BUFFER_SIZE) : buffered;
+    }
 
-        try {
+    /**
+     * True if the file starts with the gzip magic bytes
+     */
+    public static boolean isGzip(String file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == GZIP_MAGIC_1 && in.read() == GZIP_MAGIC_2;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-            ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            GZIPInputStream gzis =
-                    new GZIPInputStream(in);
-            Streams.copy(gzis, out);
-            return ByteString.of(out.toByteArray());
+    public static ByteString gzip(ByteString bytes) {
+        return Compression.gzip(bytes, Compression.DEFAULT_LEVEL);
+    }
 
-        } catch (IOException ex) {
-            throw new IllegalStateException(ex);
-        }
+    public static ByteString gunzip(ByteString bytes) {
+        return Compression.gunzip(bytes);
     }
 
     public static File gzip(File src) {
+        return gzip(src, Compression.DEFAULT_LEVEL);
+    }
+
+    public static File gzip(File src, int level) {
         try {
             File target = File.createTempFile("lumbermill", ".gzip");
-            FileOutputStream fos = new FileOutputStream(target);
-            FileInputStream fis = new FileInputStream(src);
-            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(fos);
-            Streams.copy(fis, gzipOutputStream);
-            gzipOutputStream.close();
+            try (FileInputStream fis = new FileInputStream(src);
+                 GZIPOutputStream gzipOutputStream = new GZIPOutputStream(new FileOutputStream(target), GZIP_BUFFER_SIZE) {
+                     {
+                         def.setLevel(level);
+                     }
+                 }) {
+                Streams.copy(fis, gzipOutputStream);
+            }
             return target;
         } catch (FileNotFoundException e) {
             throw new IllegalStateException(e);
@@ -157,51 +180,38 @@ public class Streams {
 
 
 
-    public static ByteString read(String file) {
-        return read(new File(file));
-    }
-
-    public static byte[] zlibCompress(ByteString byteString)  {
-        Deflater deflater = new Deflater();
-        byte[] data = byteString.toByteArray();
-        deflater.setInput(data);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        deflater.finish();
-        byte[] buffer = new byte[1024];
-        while (!deflater.finished()) {
-            int count = deflater.deflate(buffer); // returns the generated code... index
-            outputStream.write(buffer, 0, count);
-        }
+    /**
+     * Copies the file to a new temporary file with the suffix, reading and writing through the
+     * streams returned by the wrappers. Used to compress or decompress files.
+     */
+    public static File copyToTempFile(File src, String suffix, Wrapper<InputStream> input,
+                                      Wrapper<OutputStream> output) {
         try {
-            outputStream.close();
+            File target = File.createTempFile("lumbermill", suffix);
+            try (InputStream in = input.wrap(new FileInputStream(src));
+                 OutputStream out = output.wrap(new FileOutputStream(target))) {
+                Streams.copy(in, out);
+            }
+            return target;
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
-        byte[] output = outputStream.toByteArray();
+    }
 
-        return output;
+    public interface Wrapper<S> {
+        S wrap(S stream) throws IOException;
     }
 
-    public static byte[] zlibDecompress(ByteString bytes) {
-        try {
-            byte[] data = bytes.toByteArray();
-            Inflater inflater = new Inflater();
-            inflater.setInput(data);
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-            byte[] buffer = new byte[4096];
-            while (!inflater.finished()) {
-                int count = inflater.inflate(buffer);
-                outputStream.write(buffer, 0, count);
-            }
-            outputStream.close();
-            byte[] output = outputStream.toByteArray();
+    public static ByteString read(String file) {
+        return read(new File(file));
+    }
 
-            inflater.end();
-            return output;
-        } catch (Exception e) {
-            throw new IllegalStateException(e);
-        }
+    public static byte[] zlibCompress(ByteString byteString)  {
+        return Compression.zlib(byteString, Compression.DEFAULT_LEVEL).toByteArray();
+    }
+
+    public static byte[] zlibDecompress(ByteString bytes) {
+        return Compression.unzlib(bytes).toByteArray();
     }
 
     public static void write(ByteString bytes, File file) {
@@ -15,13 +15,26 @@
 package lumbermill.internal;
 
 import lumbermill.api.Event;
+import lumbermill.api.FieldPath;
+import lumbermill.api.JsonEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * StringTemplate is used instead of a reguar string in most configuration
@@ -31,18 +44,26 @@ import java.util.Optional;
  * StringTemplate.compile("{elb_status_code} == 500"}
  * StringTemplate.compile("'{host}' == '127.0.0.1'"}
  * StringTemplate.compile("application.status"} // Fields are not required
+ * StringTemplate.compile("{[requestParameters][bucketName]}"} // Nested fields in json events
+ * StringTemplate.compile("logs-{+yyyy.MM.dd}"}  // Date of @timestamp, or current date if missing
+ * StringTemplate.compile("{time:yyyy/MM/dd/HH}"} // Date of any ISO-8601 or epoch millis field
  *
+ * The pattern is split into literal and field segments once when compiled, formatting
+ * an event only appends the segments to a per thread StringBuilder.
  */
 public class StringTemplate {
 
-    private final Logger LOGGER = LoggerFactory.getLogger(StringTemplate.class);
+    private static final Logger LOGGER = LoggerFactory.getLogger(StringTemplate.class);
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
 
     private final String pattern;
     private final List<SimpleField> fields = new ArrayList<>();
+    private final Segment[] segments;
 
     public StringTemplate(String pattern) {
         this.pattern = pattern;
-        initializeFields(pattern, fields);
+        this.segments = initializeSegments(pattern, fields);
     }
 
     public String original() {
@@ -50,14 +71,11 @@ public class StringTemplate {
     }
 
     public static StringTemplate compile(String pattern) {
-        if (!hasFields(pattern)) {
+        StringTemplate template = new StringTemplate(pattern);
+        if (!template.hasFields()) {
             return new NoFieldsTemplate(pattern);
         }
-        return new StringTemplate(pattern);
-    }
-
-    private static boolean hasFields(String pattern) {
-        return new StringTemplate(pattern).hasFields();
+        return template;
     }
 
     private boolean hasFields() {
@@ -66,44 +84,64 @@ public class StringTemplate {
 
     /**
      * Formats the contents from the field according to the contents of the
-     * pattern. This will return Optional.empty() if the pattern contains a field
-     * that is not present in the event.
+     * pattern. This will return Optional.empty() if the pattern contains fields
+     * but none of them are present in the event, missing fields are otherwise left as is.
      */
     public Optional<String> format(Event event) {
-        if (fields.size() > 0) {
-
-            String newExpression = pattern;
-            boolean foundField = false;
-            for( SimpleField field : fields) {
-                if (event.has(field.name)) {
-                    newExpression = newExpression.replace(
-                            String.format("{%s}", field.name),
-                            String.format("%s", event.valueAsString(field.name)));
-                    foundField = true;
-                    newExpression = field.valueOf(newExpression);
-                } else {
-                    LOGGER.trace("Event has no field: {}", field.name);
-                }
-            }
-            return foundField ?
-                    Optional.of(newExpression) :
-                    Optional.<String>empty();
-        } else {
-            return Optional.of(pattern);
-        }
+        return Optional.ofNullable(render(event));
     }
 
+    /**
+     * Same as format() but returns null instead of Optional.empty(), intended for
+     * callers that format each event.
+     */
+    public String render(Event event) {
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+        boolean foundField = false;
+        for (Segment segment : segments) {
+            foundField |= segment.appendTo(sb, event);
+        }
+        return foundField ? sb.toString() : null;
+    }
 
-    private void initializeFields(String expression, List<SimpleField> fields) {
-
-        int first = expression.indexOf("{");
-        int next = expression.indexOf("}");
+    /**
+     * Same as render() but fails if no field in the pattern is present in the event.
+     */
+    public String renderRequired(Event event) {
+        String value = render(event);
+        if (value == null) {
+            throw new IllegalStateException("No field in template " + pattern + " found in event");
+        }
+        return value;
+    }
 
-        if( first != -1 && next != -1) {
-            String substring = expression.substring(++first, next);
-            fields.add(SimpleField.of(substring));
-            initializeFields(expression.substring(++next, expression.length()), fields);
+    private static Segment[] initializeSegments(String expression, List<SimpleField> fields) {
+        List<Segment> segments = new ArrayList<>();
+        int pos = 0;
+        while (pos < expression.length()) {
+            int first = expression.indexOf('{', pos);
+            int next = first == -1 ? -1 : expression.indexOf('}', first);
+            if (first == -1 || next == -1) {
+                segments.add(new Literal(expression.substring(pos)));
+                break;
+            }
+            if (first > pos) {
+                segments.add(new Literal(expression.substring(pos, first)));
+            }
+            String name = expression.substring(first + 1, next);
+            DateField date = DateField.parse(name);
+            if (date != null) {
+                fields.add(date.source);
+                segments.add(date);
+            } else {
+                SimpleField field = SimpleField.of(name);
+                fields.add(field);
+                segments.add(field);
+            }
+            pos = next + 1;
         }
+        return segments.toArray(new Segment[segments.size()]);
     }
 
     @Override
@@ -114,20 +152,281 @@ public class StringTemplate {
                 '}';
     }
 
-    private static class SimpleField {
+    private interface Segment {
+
+        /**
+         * Appends the segment and returns true if it was a field present in the event.
+         */
+        boolean appendTo(StringBuilder sb, Event event);
+    }
+
+    private static class Literal implements Segment {
+
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean appendTo(StringBuilder sb, Event event) {
+            sb.append(text);
+            return false;
+        }
+    }
+
+    private static class SimpleField implements Segment {
 
         public final String name;
 
+        /**
+         * Appended instead of the value if the event does not have the field
+         */
+        private final String placeholder;
+
+        /**
+         * Set if the name is a nested path like [a][b], only JsonEvents can have those
+         */
+        private final FieldPath path;
+
         static SimpleField of(String field) {
             return new SimpleField(field);
         }
 
         private SimpleField(String name) {
             this.name = name;
+            this.placeholder = "{" + name + "}";
+            this.path = FieldPath.isNested(name) ? FieldPath.compile(name) : null;
+        }
+
+        boolean has(Event event) {
+            if (path == null) {
+                return event.has(name);
+            }
+            return event instanceof JsonEvent && ((JsonEvent) event).has(path);
         }
 
-        public <T> String  valueOf(T value) {
-            return String.valueOf(value);
+        String value(Event event) {
+            return path == null ? event.valueAsString(name) : ((JsonEvent) event).valueAsString(path);
+        }
+
+        @Override
+        public boolean appendTo(StringBuilder sb, Event event) {
+            if (has(event)) {
+                sb.append(value(event));
+                return true;
+            }
+            LOGGER.trace("Event has no field: {}", name);
+            sb.append(placeholder);
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Formats a date field with a pattern, {+pattern} formats @timestamp. Formatters are
+     * shared and the last result is reused as long as the part of the timestamp that the
+     * pattern depends on is unchanged, e.g. the first 10 characters for yyyy.MM.dd, or
+     * the second for epoch millis. Epoch millis and the current time, when there is no
+     * @timestamp, are formatted in UTC.
+     */
+    private static class DateField implements Segment {
+
+        private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+        private static final String DAY_LETTERS = "GuyYDMLdQqwWEecF";
+        private static final String HOUR_LETTERS = "aBhKkH";
+
+        final SimpleField source;
+        private final String placeholder;
+        private final boolean defaultToNow;
+        private final DateTimeFormatter formatter;
+
+        /**
+         * Length of the ISO-8601 prefix that decides the result, 0 if results are not cached
+         */
+        private final int cacheKeyLength;
+
+        private volatile Cached cached;
+
+        private volatile CachedSecond cachedSecond;
+
+        /**
+         * Returns null if the name is not a date directive.
+         */
+        static DateField parse(String name) {
+            if (name.length() > 1 && name.charAt(0) == '+') {
+                return create(name, "@timestamp", name.substring(1), true);
+            }
+            int colon = name.startsWith("[") ? pathEnd(name) : name.indexOf(':');
+            if (colon <= 0 || colon >= name.length() - 1 || name.charAt(colon) != ':') {
+                return null;
+            }
+            return create(name, name.substring(0, colon), name.substring(colon + 1), false);
+        }
+
+        /**
+         * Index after the last [name] group of a nested path, the pattern may contain brackets
+         */
+        private static int pathEnd(String name) {
+            int pos = 0;
+            while (pos < name.length() && name.charAt(pos) == '[') {
+                int end = name.indexOf(']', pos);
+                if (end == -1) {
+                    return -1;
+                }
+                pos = end + 1;
+            }
+            return pos;
+        }
+
+        private static DateField create(String name, String field, String pattern, boolean defaultToNow) {
+            DateTimeFormatter formatter;
+            try {
+                formatter = FORMATTERS.computeIfAbsent(pattern, p -> DateTimeFormatter.ofPattern(p, Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                LOGGER.trace("Not a date pattern: {}", pattern);
+                return null;
+            }
+            return new DateField(name, SimpleField.of(field), formatter, cacheKeyLength(pattern), defaultToNow);
+        }
+
+        private DateField(String name, SimpleField source, DateTimeFormatter formatter,
+                          int cacheKeyLength, boolean defaultToNow) {
+            this.placeholder = "{" + name + "}";
+            this.source = source;
+            this.formatter = formatter;
+            this.cacheKeyLength = cacheKeyLength;
+            this.defaultToNow = defaultToNow;
+        }
+
+        @Override
+        public boolean appendTo(StringBuilder sb, Event event) {
+            if (source.has(event)) {
+                sb.append(format(source.value(event)));
+                return true;
+            }
+            if (defaultToNow) {
+                sb.append(formatter.format(ZonedDateTime.now(ZoneOffset.UTC)));
+                return true;
+            }
+            LOGGER.trace("Event has no field: {}", source.name);
+            sb.append(placeholder);
+            return false;
+        }
+
+        private String format(String value) {
+            Cached current = cached;
+            if (current != null && current.matches(value)) {
+                return current.result;
+            }
+            if (isEpochMillis(value)) {
+                return formatEpochMillis(Long.parseLong(value));
+            }
+            TemporalAccessor date = cacheKeyLength == 10 && isIsoDate(value) ?
+                    LocalDate.parse(value.substring(0, 10)) : parseIsoDateTime(value);
+            String result = formatter.format(date);
+            if (cacheKeyLength > 0 && value.length() >= cacheKeyLength) {
+                cached = new Cached(value.substring(0, cacheKeyLength), result);
+            }
+            return result;
+        }
+
+        private String formatEpochMillis(long millis) {
+            long second = Math.floorDiv(millis, 1000);
+            CachedSecond current = cachedSecond;
+            if (current != null && current.second == second) {
+                return current.result;
+            }
+            String result = formatter.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+            if (cacheKeyLength > 0) {
+                cachedSecond = new CachedSecond(second, result);
+            }
+            return result;
+        }
+
+        /**
+         * Checks for a zone instead of using parseBest(), which throws for every value without one
+         */
+        private static TemporalAccessor parseIsoDateTime(String value) {
+            TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parse(value);
+            return parsed.query(TemporalQueries.zone()) != null ?
+                    ZonedDateTime.from(parsed) : LocalDateTime.from(parsed);
+        }
+
+        private static boolean isIsoDate(String value) {
+            return value.length() >= 10 && value.charAt(4) == '-' && value.charAt(7) == '-';
+        }
+
+        private static boolean isEpochMillis(String value) {
+            if (value.isEmpty() || value.length() > 18) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (!Character.isDigit(value.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Finds how much of an ISO-8601 timestamp (yyyy-MM-ddTHH:mm:ss) the pattern depends on,
+         * 0 if it uses fractions, zones or anything else that prevents caching.
+         */
+        private static int cacheKeyLength(String pattern) {
+            int length = 10;
+            boolean quoted = false;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '\'') {
+                    quoted = !quoted;
+                } else if (!quoted && Character.isLetter(c)) {
+                    if (HOUR_LETTERS.indexOf(c) != -1) {
+                        length = Math.max(length, 13);
+                    } else if (c == 'm') {
+                        length = Math.max(length, 16);
+                    } else if (c == 's') {
+                        length = Math.max(length, 19);
+                    } else if (DAY_LETTERS.indexOf(c) == -1) {
+                        return 0;
+                    }
+                }
+            }
+            return length;
+        }
+
+        private static class Cached {
+            final String key;
+            final String result;
+
+            Cached(String key, String result) {
+                this.key = key;
+                this.result = result;
+            }
+
+            boolean matches(String value) {
+                return value.length() >= key.length() && value.regionMatches(0, key, 0, key.length());
+            }
+        }
+
+        private static class CachedSecond {
+            final long second;
+            final String result;
+
+            CachedSecond(long second, String result) {
+                this.second = second;
+                this.result = result;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return placeholder;
         }
     }
 
@@ -143,5 +442,10 @@ public class StringTemplate {
         public Optional<String> format(Event event) {
             return pattern;
         }
+
+        @Override
+        public String render(Event event) {
+            return pattern.get();
+        }
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats timestamps exactly like DateTimeFormatter.ISO_OFFSET_DATE_TIME but only formats the
+ * date, time and offset once per second, events within the same second only append the fraction.
+ *
+ * Shared between threads, the last second is kept in a volatile immutable holder. Epoch millis
+ * and the current time are rendered in the zone of the renderer, use systemDefault() for the
+ * instance shared by timestampNow(), timestampFromMs() and TEXT_TO_JSON.
+ */
+public final class TimestampRenderer {
+
+    private static final TimestampRenderer SYSTEM_DEFAULT = new TimestampRenderer(ZoneId.systemDefault());
+
+    private final ZoneId zone;
+
+    /**
+     * Last second rendered by format(ZonedDateTime), in any zone
+     */
+    private volatile Second lastZoned;
+
+    /**
+     * Last second rendered from epoch millis, always in this zone
+     */
+    private volatile Second lastMillis;
+
+    public TimestampRenderer(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Renderer in the default zone of the JVM when it was started.
+     */
+    public static TimestampRenderer systemDefault() {
+        return SYSTEM_DEFAULT;
+    }
+
+    public String format(ZonedDateTime timestamp) {
+        long epochSecond = timestamp.toEpochSecond();
+        int offset = timestamp.getOffset().getTotalSeconds();
+        Second second = lastZoned;
+        if (second == null || second.epochSecond != epochSecond || second.offset != offset) {
+            second = new Second(timestamp);
+            lastZoned = second;
+        }
+        return second.render(timestamp.getNano());
+    }
+
+    public String format(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+        Second second = lastMillis;
+        if (second == null || second.epochSecond != epochSecond) {
+            second = new Second(Instant.ofEpochSecond(epochSecond).atZone(zone));
+            lastMillis = second;
+        }
+        return second.render((int) Math.floorMod(epochMillis, 1000) * 1_000_000);
+    }
+
+    /**
+     * Current time with millisecond precision
+     */
+    public String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    /**
+     * Nine digits without trailing zeros, same as ISO_LOCAL_TIME
+     */
+    private static void appendFraction(StringBuilder sb, int nano) {
+        int digits = 9;
+        while (nano % 10 == 0) {
+            nano /= 10;
+            digits--;
+        }
+        int start = sb.length();
+        for (int i = 0; i < digits; i++) {
+            sb.append('0');
+        }
+        for (int i = start + digits - 1; i >= start; i--) {
+            sb.setCharAt(i, (char) ('0' + nano % 10));
+            nano /= 10;
+        }
+    }
+
+    private static final class Second {
+        final long epochSecond;
+        final int offset;
+
+        /**
+         * Date and time without fraction and offset
+         */
+        final String prefix;
+        final String offsetId;
+
+        /**
+         * Result when there is no fraction
+         */
+        final String formatted;
+
+        Second(ZonedDateTime timestamp) {
+            this.epochSecond = timestamp.toEpochSecond();
+            this.offset = timestamp.getOffset().getTotalSeconds();
+            this.prefix = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(timestamp.toLocalDateTime().withNano(0));
+            this.offsetId = timestamp.getOffset().getId();
+            this.formatted = prefix + offsetId;
+        }
+
+        String render(int nano) {
+            if (nano == 0) {
+                return formatted;
+            }
+            StringBuilder sb = new StringBuilder(prefix.length() + 16)
+                    .append(prefix)
+                    .append('.');
+            appendFraction(sb, nano);
+            return sb.append(offsetId).toString();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import okio.ByteString;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Zstandard compression with the native library bundled with zstd-jni, a better ratio than
+ * zlib at a fraction of the cpu.
+ *
+ * Small events compress poorly on their own since there is little to find repetitions in, a
+ * dictionary trained on sample events fixes that. The same dictionary must be used to decompress.
+ *
+ * Each instance keeps a compression and a decompression context per thread with the level
+ * and dictionary already loaded. Events are standard zstd frames that include the uncompressed
+ * size, files are written as standard zstd streams.
+ */
+public final class ZstdCompression {
+
+    public static final int DEFAULT_LEVEL = 3;
+
+    private final int level;
+    private final byte[] dictionary;
+
+    private final ThreadLocal<ZstdCompressCtx> compressors;
+    private final ThreadLocal<ZstdDecompressCtx> decompressors;
+
+    /**
+     * @param dictionary a trained dictionary or null
+     */
+    public ZstdCompression(int level, ByteString dictionary) {
+        this.level = level(level);
+        this.dictionary = dictionary == null ? null : dictionary.toByteArray();
+        this.compressors = ThreadLocal.withInitial(() -> {
+            ZstdCompressCtx ctx = new ZstdCompressCtx().setLevel(this.level);
+            return this.dictionary == null ? ctx : ctx.loadDict(this.dictionary);
+        });
+        this.decompressors = ThreadLocal.withInitial(() -> {
+            ZstdDecompressCtx ctx = new ZstdDecompressCtx();
+            return this.dictionary == null ? ctx : ctx.loadDict(this.dictionary);
+        });
+    }
+
+    public static int level(int level) {
+        if (level < 1 || level > Zstd.maxCompressionLevel()) {
+            throw new IllegalArgumentException("Zstd level must be 1 to " + Zstd.maxCompressionLevel() + ", was " + level);
+        }
+        return level;
+    }
+
+    /**
+     * Trains a dictionary from sample events, typically a few thousand events and a dictionary
+     * size of 16 - 112 KB. Fails if the samples are too few or too similar.
+     */
+    public static ByteString train(List<ByteString> samples, int dictionarySize) {
+        byte[][] data = new byte[samples.size()][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = samples.get(i).toByteArray();
+        }
+        byte[] dictionary = new byte[dictionarySize];
+        long size = Zstd.trainFromBuffer(data, dictionary);
+        if (Zstd.isError(size)) {
+            throw new IllegalArgumentException("Failed to train zstd dictionary from " + data.length
+                    + " samples: " + Zstd.getErrorName(size));
+        }
+        return ByteString.of(dictionary, 0, (int) size);
+    }
+
+    public ByteString compress(ByteString bytes) {
+        byte[] data = bytes.toByteArray();
+        byte[] out = Compression.buffer((int) Zstd.compressBound(data.length));
+        try {
+            int size = compressors.get().compressByteArray(out, 0, out.length, data, 0, data.length);
+            return ByteString.of(out, 0, size);
+        } catch (ZstdException e) {
+            throw new IllegalStateException("Failed to compress with zstd", e);
+        }
+    }
+
+    public ByteString decompress(ByteString bytes) {
+        byte[] data = bytes.toByteArray();
+        long frameSize = Zstd.getFrameContentSize(data);
+        if (frameSize < 0) {
+            throw new IllegalStateException("Not a zstd frame with known content size");
+        }
+        int length = Compression.checkDecompressedSize("zstd", frameSize, data.length, 0);
+        byte[] out = Compression.buffer(length);
+        try {
+            int size = decompressors.get().decompressByteArray(out, 0, length, data, 0, data.length);
+            return ByteString.of(out, 0, size);
+        } catch (ZstdException e) {
+            throw new IllegalStateException("Corrupt zstd data", e);
+        }
+    }
+
+    public File compress(File file) {
+        return Streams.copyToTempFile(file, ".zst", in -> in, out -> {
+            ZstdOutputStream zstd = new ZstdOutputStream(out, level);
+            return dictionary == null ? zstd : zstd.setDict(dictionary);
+        });
+    }
+
+    public File decompress(File file) {
+        return Streams.copyToTempFile(file, ".unzst", in -> {
+            ZstdInputStream zstd = new ZstdInputStream(in);
+            return dictionary == null ? zstd : zstd.setDict(dictionary);
+        }, out -> out);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.code.regexp.GroupInfo;
+import lumbermill.api.FieldPath;
+import lumbermill.api.JsonEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Grok expression compiled into a plain regex where each capture knows its group
+ * indexes, target field and type. Matches are written straight into the event instead
+ * of going through java-grok's capture map and json. Values missing any of the literals
+ * the expression requires are rejected without running the regex.
+ *
+ * Immutable and shared between threads.
+ */
+final class CompiledGrok {
+
+    /**
+     * Captures with this name are dropped, same as java-grok
+     */
+    private static final String UNWANTED = "UNWANTED";
+
+    private final String expression;
+    private final Pattern pattern;
+
+    /**
+     * Literals that any matching value contains, checked before running the regex
+     */
+    private final String[] literals;
+
+    /**
+     * Sorted by field name, the same order java-grok produced
+     */
+    private final Capture[] captures;
+
+    private CompiledGrok(String expression, Pattern pattern, Capture[] captures) {
+        this.expression = expression;
+        this.pattern = pattern;
+        this.literals = RequiredLiterals.of(pattern.pattern());
+        this.captures = captures;
+    }
+
+    static CompiledGrok of(oi.thekraken.grok.api.Grok grok) {
+        com.google.code.regexp.Pattern named = com.google.code.regexp.Pattern.compile(grok.getNamedRegex());
+        Map<String, Capture> captures = new TreeMap<>();
+        for (Map.Entry<String, List<GroupInfo>> group : named.groupInfo().entrySet()) {
+            String name = grok.getNamedRegexCollectionById(group.getKey());
+            if (name == null || name.isEmpty()) {
+                name = group.getKey();
+            }
+            int[] indexes = new int[group.getValue().size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = group.getValue().get(i).groupIndex() + 1;
+            }
+            Capture capture = new Capture(name, indexes);
+            if (!UNWANTED.equals(capture.field)) {
+                captures.put(capture.field, capture);
+            }
+        }
+        return new CompiledGrok(grok.getOriginalGrokPattern(), named.pattern(),
+                captures.values().toArray(new Capture[captures.size()]));
+    }
+
+    /**
+     * Writes all captured values to the event, returns false if the value did not match.
+     */
+    boolean match(String value, JsonEvent event) {
+        return match(value, event, 0);
+    }
+
+    /**
+     * Same as match(value, event) but throws InterruptibleCharSequence.Timeout if the match
+     * is still running at the deadline (System.nanoTime()), 0 means no deadline.
+     */
+    boolean match(String value, JsonEvent event, long deadline) {
+        if (value == null || value.trim().isEmpty()) {
+            return false;
+        }
+        if (!RequiredLiterals.containsAll(value, literals)) {
+            return false;
+        }
+        Matcher matcher = pattern.matcher(deadline == 0 ? value : new InterruptibleCharSequence(value, deadline));
+        if (!matcher.find()) {
+            return false;
+        }
+        for (Capture capture : captures) {
+            capture.write(matcher, event);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private static final class Capture {
+
+        /**
+         * Semantic name including type, e.g. client_port:int
+         */
+        final String name;
+        final String field;
+        final FieldPath path;
+        /**
+         * Null if the type is not supported, the value is then tagged with name_grokfailure
+         */
+        final ValueType type;
+        final int[] groups;
+
+        Capture(String name, int[] groups) {
+            this.name = name;
+            this.groups = groups;
+            String[] parts = name.split(";|:", 3);
+            this.field = parts[0];
+            this.path = FieldPath.compile(field);
+            this.type = parts.length == 1 ? ValueType.STRING : parts.length == 2 ? ValueType.of(parts[1]) : null;
+        }
+
+        /**
+         * Duplicate names share field, the first group that matched is used.
+         */
+        void write(Matcher matcher, JsonEvent event) {
+            String value = null;
+            for (int i = 0; i < groups.length && value == null; i++) {
+                value = matcher.group(groups[i]);
+            }
+            if (value == null) {
+                return;
+            }
+            try {
+                event.put(path, convert(value));
+            } catch (RuntimeException e) {
+                event.put(path, TextNode.valueOf(clean(value)));
+                event.put(field + "_grokfailure", e.toString());
+            }
+        }
+
+        private JsonNode convert(String value) {
+            if (type == null) {
+                throw new IllegalArgumentException("Unsupported spec :" + name);
+            }
+            return type.convert(type == ValueType.STRING ? clean(value) : value);
+        }
+
+        /**
+         * Removes surrounding quotes, same as java-grok
+         */
+        private static String clean(String value) {
+            int length = value.length();
+            if (length == 1 && (value.charAt(0) == '"' || value.charAt(0) == '\'')) {
+                return "";
+            }
+            if (length > 1 && ((value.charAt(0) == '"' && value.charAt(length - 1) == '"')
+                    || (value.charAt(0) == '\'' && value.charAt(length - 1) == '\''))) {
+                return value.substring(1, length - 1);
+            }
+            return value;
+        }
+    }
+}
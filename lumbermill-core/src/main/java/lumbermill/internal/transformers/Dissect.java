@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import lumbermill.api.FieldPath;
+import lumbermill.api.JsonEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a field into several fields using the literal delimiters of a pattern, use Core.dissect()
+ * to create.
+ *
+ * <pre>
+ *  {@code
+ * %{timestamp} %{elb} %{client_ip}:%{client_port:int} %{}:%{} ... "%{verb} %{request} %{}" "%{useragent}"
+ * }
+ * </pre>
+ *
+ * %{name} extracts up to the next delimiter, the last field takes the rest of the value.
+ * %{name:int} converts the value (int, long, float, double or boolean, same as grok).
+ * %{} and %{?name} skip the value, %{name->} also skips repeated delimiters after the value
+ * (e.g. padding with spaces). Names can be nested paths like [request][verb].
+ *
+ * The value is scanned once from left to right with indexOf(), no regex and no backtracking.
+ * Nothing is written unless the whole pattern matches, the event is then tagged instead.
+ */
+public class Dissect implements Func1<JsonEvent, JsonEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Dissect.class);
+
+    public static final String ERROR_TAG = "_dissectfailure";
+
+    private final FieldPath field;
+    private final String pattern;
+
+    /**
+     * Literal text before the first field
+     */
+    private final String prefix;
+
+    private final Key[] keys;
+    private final boolean shouldTag;
+    private final String errorTagName;
+
+    public Dissect(String field, String pattern, boolean shouldTag, String errorTagName) {
+        this.field = FieldPath.compile(field);
+        this.pattern = pattern;
+        this.shouldTag = shouldTag;
+        this.errorTagName = errorTagName;
+        List<Key> keys = new ArrayList<>();
+        this.prefix = parse(pattern, keys);
+        this.keys = keys.toArray(new Key[keys.size()]);
+    }
+
+    private static String parse(String pattern, List<Key> keys) {
+        int start = pattern.indexOf("%{");
+        if (start == -1) {
+            throw new IllegalArgumentException("Dissect pattern has no fields: " + pattern);
+        }
+        String prefix = pattern.substring(0, start);
+        while (start != -1) {
+            int end = pattern.indexOf('}', start);
+            if (end == -1) {
+                throw new IllegalArgumentException("Unterminated field in dissect pattern: " + pattern);
+            }
+            int next = pattern.indexOf("%{", end + 1);
+            String delimiter = pattern.substring(end + 1, next == -1 ? pattern.length() : next);
+            if (delimiter.isEmpty() && next != -1) {
+                throw new IllegalArgumentException("Fields must be separated by a delimiter: " + pattern);
+            }
+            keys.add(Key.of(pattern.substring(start + 2, end), delimiter));
+            start = next;
+        }
+        return prefix;
+    }
+
+    @Override
+    public JsonEvent call(JsonEvent event) {
+        if (!event.has(field)) {
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("Event did not have requested field: {}", field);
+            }
+            return event;
+        }
+        String value = event.valueAsString(field);
+        String[] values = split(value);
+        if (values == null) {
+            if (shouldTag) {
+                event.addTag(errorTagName);
+            }
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("Dissect did not match {}, {}", pattern, value);
+            }
+            return event;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i].write(values[i], event);
+        }
+        event.removeIfExists(errorTagName);
+        return event;
+    }
+
+    /**
+     * Returns the value of each key or null if a delimiter is missing.
+     */
+    String[] split(String value) {
+        if (!value.startsWith(prefix)) {
+            return null;
+        }
+        String[] values = new String[keys.length];
+        int pos = prefix.length();
+        for (int i = 0; i < keys.length; i++) {
+            Key key = keys[i];
+            if (key.delimiter.isEmpty()) {
+                values[i] = value.substring(pos);
+                pos = value.length();
+                continue;
+            }
+            int end = value.indexOf(key.delimiter, pos);
+            if (end == -1) {
+                return null;
+            }
+            values[i] = value.substring(pos, end);
+            pos = end + key.delimiter.length();
+            if (key.skipRepeated) {
+                while (value.startsWith(key.delimiter, pos)) {
+                    pos += key.delimiter.length();
+                }
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " {" +
+                "field='" + field + '\'' +
+                ", pattern=" + pattern +
+                '}';
+    }
+
+    private static final class Key {
+
+        /**
+         * Null if the value is skipped
+         */
+        final FieldPath path;
+        final ValueType type;
+        final String delimiter;
+        final boolean skipRepeated;
+
+        private Key(FieldPath path, ValueType type, String delimiter, boolean skipRepeated) {
+            this.path = path;
+            this.type = type;
+            this.delimiter = delimiter;
+            this.skipRepeated = skipRepeated;
+        }
+
+        static Key of(String spec, String delimiter) {
+            boolean skipRepeated = spec.endsWith("->");
+            String name = skipRepeated ? spec.substring(0, spec.length() - 2) : spec;
+            if (name.isEmpty() || name.startsWith("?")) {
+                return new Key(null, ValueType.STRING, delimiter, skipRepeated);
+            }
+            ValueType type = ValueType.STRING;
+            int colon = name.lastIndexOf(':');
+            if (colon > 0 && colon > name.lastIndexOf(']')) {
+                type = ValueType.of(name.substring(colon + 1));
+                if (type == null) {
+                    throw new IllegalArgumentException("Unsupported type in dissect field: " + spec);
+                }
+                name = name.substring(0, colon);
+            }
+            return new Key(FieldPath.compile(name), type, delimiter, skipRepeated);
+        }
+
+        /**
+         * Values that can not be converted are written as strings with name_dissectfailure added
+         */
+        void write(String value, JsonEvent event) {
+            if (path == null) {
+                return;
+            }
+            try {
+                event.put(path, type.convert(value));
+            } catch (NumberFormatException e) {
+                event.put(path, value);
+                event.put(path.leaf() + "_dissectfailure", e.toString());
+            }
+        }
+    }
+}
@@ -15,36 +15,50 @@
 package lumbermill.internal.transformers;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import lumbermill.api.Event;
+import lumbermill.api.FieldPath;
 import lumbermill.api.JsonEvent;
-import oi.thekraken.grok.api.Match;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.stream.Collectors.toList;
 
 /**
  * Extracts fields from logs and adds them to json structure.
+ *
+ * When created with several patterns they are tried in order and the first one that matches
+ * is used. With reorder enabled the patterns are periodically sorted by how often they have
+ * matched, so the most common log format is tried first.
+ *
+ * With a timeout each event has a time budget for matching all patterns, values that can not
+ * be matched within it are tagged with GrokFactory.TIMEOUT_TAG instead of stalling the pipeline.
  */
 public class Grok<E extends Event>  {
 
     private final Logger LOGGER = LoggerFactory.getLogger(Grok.class);
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Number of events between each reordering of the patterns
+     */
+    static final int REORDER_INTERVAL = 1024;
 
     /**
      * Json field to extract value from
      */
-    private final String field;
+    private final FieldPath field;
 
     /**
-     * Grok patten to use
+     * Grok pattern(s) to use
      */
     private final String pattern;
 
@@ -59,20 +73,41 @@ public class Grok<E extends Event>  {
     private final String errorTagName;
 
     /**
-     * Grok instance
+     * Wether patterns should be sorted by number of hits
+     */
+    private final boolean reorder;
+
+    /**
+     * Time budget per event in nanoseconds, 0 if matching is not limited
      */
-    private final oi.thekraken.grok.api.Grok internal;
+    private final long timeoutNanos;
+
+    /**
+     * Current order the patterns are tried in, replaced (never modified) when reordering
+     */
+    private volatile Candidate[] candidates;
+
+    private final AtomicLong events = new AtomicLong();
 
 
     /**
      * Use GrokFactory to create
      */
-     Grok(oi.thekraken.grok.api.Grok internal, String field, String pattern, boolean shouldtag, String errorTagName) {
-        this.internal = internal;
-        this.field = field;
-        this.pattern = pattern;
+     Grok(List<CompiledGrok> internals, String field, boolean shouldtag, String errorTagName,
+          boolean reorder, long timeoutMillis) {
+        if (internals.isEmpty()) {
+            throw new IllegalArgumentException("At least one grok pattern is required");
+        }
+        this.candidates = new Candidate[internals.size()];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = new Candidate(internals.get(i), i);
+        }
+        this.field = FieldPath.compile(field);
+        this.pattern = internals.size() == 1 ? internals.get(0).toString() : internals.toString();
         this.shouldTag = shouldtag;
         this.errorTagName = errorTagName;
+        this.reorder = reorder && internals.size() > 1;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
     }
 
     public Observable<E> parse(E event) {
@@ -105,10 +140,18 @@ public class Grok<E extends Event>  {
         }
 
         String value = jsonEvent.valueAsString(field);
-        Match gm = internal.match(value);
-        gm.captures();
 
-        if (gm.isNull()) {
+        boolean matched;
+        try {
+            matched = match(value, jsonEvent);
+        } catch (InterruptibleCharSequence.Timeout e) {
+            jsonEvent.addTag(GrokFactory.TIMEOUT_TAG);
+            LOGGER.warn("Grok timed out after {} ms matching {} against a value of length {}",
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos), pattern, value.length());
+            return event;
+        }
+
+        if (!matched) {
             if (shouldTag) {
                 jsonEvent.addTag(errorTagName);
             }
@@ -118,28 +161,52 @@ public class Grok<E extends Event>  {
             return event;
         }
 
-        try {
-            JsonEvent newEvent = new JsonEvent((ObjectNode) objectMapper.readTree(gm.toJson()));
-            fixUnsupportedGrokTypes(newEvent);
-            jsonEvent.merge(newEvent);
-            jsonEvent.removeIfExists(errorTagName);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        jsonEvent.removeIfExists(errorTagName);
         return event;
     }
 
+    private boolean match(String value, JsonEvent event) {
+        if (reorder && events.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+        long deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+        for (Candidate candidate : candidates) {
+            boolean matched;
+            try {
+                matched = candidate.internal.match(value, event, deadline);
+            } catch (InterruptibleCharSequence.Timeout e) {
+                candidate.timeouts.increment();
+                throw e;
+            }
+            if (matched) {
+                candidate.hits.increment();
+                return true;
+            }
+            candidate.misses.increment();
+        }
+        return false;
+    }
+
     /**
-     * Float is not supported in java-grok, fixing this here.
+     * Sorts by hits, patterns with the same number of hits keep their configured order
      */
-    private void fixUnsupportedGrokTypes(final JsonEvent event) {
-        event.eachField((field1, value) -> {
-            if (field1.endsWith(":float")) {
-                String[] nameAndType = field1.split(":");
-                event.remove(field1);
-                event.put(nameAndType[0], Float.parseFloat(value));
-            }
-        });
+    private void reorder() {
+        Candidate[] sorted = candidates.clone();
+        Arrays.sort(sorted, Comparator.comparingLong((Candidate c) -> -c.hits.sum())
+                .thenComparingInt(c -> c.position));
+        candidates = sorted;
+    }
+
+    /**
+     * Hit, miss and timeout counters for each pattern, in the order the patterns are currently tried.
+     */
+    public List<Counter> counters() {
+        List<Counter> counters = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            counters.add(new Counter(candidate.internal.toString(),
+                    candidate.hits.sum(), candidate.misses.sum(), candidate.timeouts.sum()));
+        }
+        return Collections.unmodifiableList(counters);
     }
 
     @Override
@@ -149,4 +216,68 @@ public class Grok<E extends Event>  {
                 ", pattern=" + pattern +
                 '}';
     }
+
+    private static final class Candidate {
+
+        final CompiledGrok internal;
+
+        /**
+         * Index in the configured list of patterns
+         */
+        final int position;
+
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+
+        Candidate(CompiledGrok internal, int position) {
+            this.internal = internal;
+            this.position = position;
+        }
+    }
+
+    public static final class Counter {
+
+        private final String pattern;
+        private final long hits;
+        private final long misses;
+        private final long timeouts;
+
+        Counter(String pattern, long hits, long misses, long timeouts) {
+            this.pattern = pattern;
+            this.hits = hits;
+            this.misses = misses;
+            this.timeouts = timeouts;
+        }
+
+        public String pattern() {
+            return pattern;
+        }
+
+        /**
+         * Number of events this pattern matched
+         */
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * Number of events this pattern was tried on without matching
+         */
+        public long misses() {
+            return misses;
+        }
+
+        /**
+         * Number of events where the time budget ran out while trying this pattern
+         */
+        public long timeouts() {
+            return timeouts;
+        }
+
+        @Override
+        public String toString() {
+            return pattern + " {hits=" + hits + ", misses=" + misses + ", timeouts=" + timeouts + '}';
+        }
+    }
 }
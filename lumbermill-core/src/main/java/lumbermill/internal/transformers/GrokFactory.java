@@ -15,33 +15,102 @@
 package lumbermill.internal.transformers;
 
 import oi.thekraken.grok.api.exception.GrokException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 
 public class GrokFactory {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrokFactory.class);
+
     public static final String ERROR_TAG = "_grokparsefailure";
 
+    /**
+     * Added when a value could not be matched within the configured timeout
+     */
+    public static final String TIMEOUT_TAG = "_groktimeout";
+
+    private static final String[] PATTERN_FILES = {
+            "patterns", "aws", "firewalls", "haproxy", "ruby", "nagios", "java", "linux-syslog"};
+
+    /**
+     * Compiled expressions are immutable once compiled and shared by all Grok instances
+     * using the same pattern and custom patterns.
+     */
+    private static final Map<CacheKey, CompiledGrok> COMPILED = new ConcurrentHashMap<>();
+
     public static Grok create(String field, String pattern, boolean shouldtag, String tag) {
-        return new Grok(internal(pattern), field, pattern, shouldtag, tag);
+        return create(field, pattern, Collections.emptyMap(), shouldtag, tag);
+    }
+
+    /**
+     * @param customPatterns - pattern definitions (name -> regex) used in addition to the bundled ones
+     */
+    public static Grok create(String field, String pattern, Map<String, String> customPatterns,
+                              boolean shouldtag, String tag) {
+        return create(field, Collections.singletonList(pattern), customPatterns, shouldtag, tag, false);
+    }
+
+    /**
+     * Creates a Grok that tries each pattern in order and uses the first one that matches.
+     *
+     * @param reorder - if true the patterns are sorted by number of matches at runtime
+     */
+    public static Grok create(String field, List<String> patterns, Map<String, String> customPatterns,
+                              boolean shouldtag, String tag, boolean reorder) {
+        return create(field, patterns, customPatterns, shouldtag, tag, reorder, 0);
+    }
+
+    /**
+     * @param timeoutMillis - time budget for matching each event, 0 for no limit
+     */
+    public static Grok create(String field, List<String> patterns, Map<String, String> customPatterns,
+                              boolean shouldtag, String tag, boolean reorder, long timeoutMillis) {
+        List<CompiledGrok> internals = new ArrayList<>();
+        for (String pattern : patterns) {
+            internals.add(internal(pattern, customPatterns));
+        }
+        return new Grok(internals, field, shouldtag, tag, reorder, timeoutMillis);
     }
 
     public static Grok create(String field, String pattern, boolean shouldtag) {
-        return new Grok(internal(pattern), field, pattern, shouldtag, ERROR_TAG);
+        return create(field, pattern, shouldtag, ERROR_TAG);
     }
 
     public static Grok create(String field, String pattern) {
-        return new Grok(internal(pattern), field, pattern, true, ERROR_TAG);
+        return create(field, pattern, true, ERROR_TAG);
     }
 
-    private static oi.thekraken.grok.api.Grok internal(String pattern) {
+    private static CompiledGrok internal(String pattern, Map<String, String> customPatterns) {
+        return COMPILED.computeIfAbsent(new CacheKey(pattern, customPatterns),
+                key -> compile(key.pattern, key.customPatterns));
+    }
+
+    /**
+     * Compiles without using the cache
+     */
+    static CompiledGrok compile(String pattern, Map<String, String> customPatterns) {
         try {
+            long start = System.nanoTime();
             oi.thekraken.grok.api.Grok grok =  new oi.thekraken.grok.api.Grok();
             grok.copyPatterns(GROK_TEMPLATE.getPatterns());
+            for (Map.Entry<String, String> custom : customPatterns.entrySet()) {
+                grok.addPattern(custom.getKey(), custom.getValue());
+            }
             grok.compile(pattern, true);
-            return grok;
+            LOGGER.debug("Compiled grok pattern {} in {} ms", pattern,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return CompiledGrok.of(grok);
         } catch (GrokException e) {
             throw new IllegalStateException(e);
         }
@@ -55,26 +124,44 @@ public class GrokFactory {
 
     static {
         try {
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/patterns").openStream()));
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/aws").openStream()));
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/firewalls").openStream()));
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/haproxy").openStream()));
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/ruby").openStream()));
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/nagios").openStream()));
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/java").openStream()));
-            GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
-                    .getContextClassLoader().getResource("patterns/linux-syslog").openStream()));
+            long total = System.nanoTime();
+            for (String file : PATTERN_FILES) {
+                long start = System.nanoTime();
+                GROK_TEMPLATE.addPatternFromReader(new InputStreamReader(Thread.currentThread()
+                        .getContextClassLoader().getResource("patterns/" + file).openStream()));
+                LOGGER.debug("Loaded grok patterns/{} in {} us", file,
+                        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+            LOGGER.debug("Loaded {} grok patterns in {} ms", GROK_TEMPLATE.getPatterns().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - total));
         } catch (GrokException e) {
             throw new IllegalStateException(e);
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
     }
+
+    private static final class CacheKey {
+
+        final String pattern;
+        final Map<String, String> customPatterns;
+
+        CacheKey(String pattern, Map<String, String> customPatterns) {
+            this.pattern = pattern;
+            this.customPatterns = Collections.unmodifiableMap(new TreeMap<>(customPatterns));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CacheKey other = (CacheKey) o;
+            return pattern.equals(other.pattern) && customPatterns.equals(other.customPatterns);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * pattern.hashCode() + customPatterns.hashCode();
+        }
+    }
 }
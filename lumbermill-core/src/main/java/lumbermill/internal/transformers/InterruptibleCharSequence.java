@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+/**
+ * Wraps the value a regex is matched against and aborts the match when the deadline has
+ * passed. The regex engine reads the input through charAt() so a backtracking match that
+ * runs away is stopped within a few thousand steps after the deadline.
+ */
+final class InterruptibleCharSequence implements CharSequence {
+
+    /**
+     * Number of charAt() calls between each check of the clock
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final String value;
+    private final long deadline;
+    private int reads;
+
+    /**
+     * @param deadline - System.nanoTime() value after which the match is aborted
+     */
+    InterruptibleCharSequence(String value, long deadline) {
+        this.value = value;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++reads == CHECK_INTERVAL) {
+            reads = 0;
+            if (System.nanoTime() - deadline > 0) {
+                throw new Timeout();
+            }
+        }
+        return value.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return value.length();
+    }
+
+    /**
+     * Used for captured groups, no need to check the deadline
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return value.substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    /**
+     * Thrown when a match has run past its deadline
+     */
+    static final class Timeout extends RuntimeException {
+        Timeout() {
+            super("Grok match exceeded its time budget", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds literal strings that must be present in any value that a regex can match, e.g.
+ * " HTTP/" in an access log pattern. Checking those with indexOf() is much cheaper than
+ * running a backtracking regex on a value that can not match.
+ *
+ * The analysis is conservative, alternations, optional groups, lookarounds and anything it
+ * does not understand contribute no literals. Inline flags like (?i) disable it completely.
+ */
+final class RequiredLiterals {
+
+    /**
+     * Shorter literals hardly ever reject anything
+     */
+    private static final int MIN_LENGTH = 2;
+
+    /**
+     * Only the longest literals are checked
+     */
+    private static final int MAX_LITERALS = 4;
+
+    private static final int NONE = -1;
+
+    private final String regex;
+    private final List<String> literals = new ArrayList<>();
+    private final StringBuilder run = new StringBuilder();
+    private int pos;
+
+    private RequiredLiterals(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Returns the literals to check, longest first, empty if nothing can be used.
+     */
+    static String[] of(String regex) {
+        RequiredLiterals parser = new RequiredLiterals(regex);
+        List<String> found;
+        try {
+            found = parser.sequence() ? parser.literals : Collections.emptyList();
+        } catch (Unsupported e) {
+            found = Collections.emptyList();
+        }
+        return found.stream()
+                .filter(literal -> literal.length() >= MIN_LENGTH)
+                .distinct()
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .limit(MAX_LITERALS)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * True if all literals are present in the value.
+     */
+    static boolean containsAll(String value, String[] literals) {
+        for (String literal : literals) {
+            if (value.indexOf(literal) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses until end of regex or the closing parenthesis of the current group. Returns
+     * false if the sequence contains an alternation, then none of its literals are required.
+     */
+    private boolean sequence() {
+        int start = literals.size();
+        boolean alternation = false;
+        while (pos < regex.length()) {
+            char c = regex.charAt(pos);
+            if (c == ')') {
+                break;
+            }
+            pos++;
+            switch (c) {
+                case '|':
+                    alternation = true;
+                    flush();
+                    break;
+                case '\\':
+                    escape();
+                    break;
+                case '[':
+                    flush();
+                    skipClass();
+                    quantifier();
+                    break;
+                case '(':
+                    flush();
+                    group();
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                    flush();
+                    quantifier();
+                    break;
+                default:
+                    literal(c);
+            }
+        }
+        flush();
+        if (alternation) {
+            literals.subList(start, literals.size()).clear();
+        }
+        return !alternation;
+    }
+
+    private void literal(char c) {
+        run.append(c);
+        int min = quantifier();
+        if (min == 0) {
+            run.setLength(run.length() - 1);
+        }
+        if (min != NONE) {
+            flush();
+        }
+    }
+
+    /**
+     * Consumes a quantifier for the previous element if there is one and returns the minimum
+     * number of repetitions it allows, 0 or 1, or NONE if there was no quantifier.
+     */
+    private int quantifier() {
+        if (pos >= regex.length()) {
+            return NONE;
+        }
+        char c = regex.charAt(pos);
+        int min;
+        if (c == '?' || c == '*') {
+            min = 0;
+            pos++;
+        } else if (c == '+') {
+            min = 1;
+            pos++;
+        } else if (c == '{') {
+            int end = regex.indexOf('}', pos);
+            if (end == -1) {
+                throw new Unsupported();
+            }
+            min = regex.charAt(pos + 1) == '0' ? 0 : 1;
+            pos = end + 1;
+        } else {
+            return NONE;
+        }
+        if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+            pos++;
+        }
+        return min;
+    }
+
+    private void group() {
+        boolean consuming = true;
+        if (regex.startsWith("?", pos)) {
+            if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+                pos += 2;
+            } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+                pos += 2;
+                consuming = false;
+            } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                pos += 3;
+                consuming = false;
+            } else if (regex.startsWith("?<", pos)) {
+                pos = regex.indexOf('>', pos) + 1;
+                if (pos == 0) {
+                    throw new Unsupported();
+                }
+            } else {
+                throw new Unsupported();
+            }
+        }
+        int start = literals.size();
+        boolean required = sequence();
+        if (pos >= regex.length()) {
+            throw new Unsupported();
+        }
+        pos++;
+        // Always consume the quantifier, otherwise it would be read as literal text
+        int min = quantifier();
+        if (!required || !consuming || min == 0) {
+            literals.subList(start, literals.size()).clear();
+        }
+    }
+
+    private void escape() {
+        if (pos >= regex.length()) {
+            throw new Unsupported();
+        }
+        char c = regex.charAt(pos++);
+        if (!Character.isLetterOrDigit(c)) {
+            literal(c);
+            return;
+        }
+        flush();
+        switch (c) {
+            case 'Q':
+                int end = regex.indexOf("\\E", pos);
+                pos = end == -1 ? regex.length() : end + 2;
+                break;
+            case 'p':
+            case 'P':
+            case 'x':
+                if (pos < regex.length() && regex.charAt(pos) == '{') {
+                    pos = regex.indexOf('}', pos) + 1;
+                } else if (c == 'x') {
+                    pos += 2;
+                } else {
+                    pos++;
+                }
+                break;
+            case 'u':
+                pos += 4;
+                break;
+            case 'c':
+                pos++;
+                break;
+            case 'k':
+                pos = regex.indexOf('>', pos) + 1;
+                break;
+            default:
+                while (Character.isDigit(c) && pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                    pos++;
+                }
+        }
+        if (pos <= 0 || pos > regex.length()) {
+            throw new Unsupported();
+        }
+        quantifier();
+    }
+
+    private void skipClass() {
+        int depth = 1;
+        if (pos < regex.length() && regex.charAt(pos) == '^') {
+            pos++;
+        }
+        if (pos < regex.length() && regex.charAt(pos) == ']') {
+            pos++;
+        }
+        while (pos < regex.length() && depth > 0) {
+            char c = regex.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+        }
+        if (depth > 0) {
+            throw new Unsupported();
+        }
+    }
+
+    private void flush() {
+        if (run.length() > 0) {
+            literals.add(run.toString());
+            run.setLength(0);
+        }
+    }
+
+    private static final class Unsupported extends RuntimeException {
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import lumbermill.api.Event;
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Routes each event to the function of the first (or every) matching rule, use Core.route()
+ * or Core.routeAll() to create.
+ *
+ * <pre>
+ * Groovy usage:
+ *  {@code
+ * .map(route()
+ *     .ifMatch("type", "elb", elbPipeline)
+ *     .ifMatch("type", "cloudfront", cloudfrontPipeline)
+ *     .ifMatch("message", ".*ERROR.*", errorPipeline)
+ *     .otherwise(defaultPipeline))
+ * }
+ * </pre>
+ *
+ * Match values without regex characters are exact matches, all exact matches for the same
+ * field share a single hash lookup. Other values are compiled to a Pattern once. Conditions
+ * are evaluated before any function is applied, so functions can not affect which rules match.
+ */
+public class Router<E extends Event> implements Func1<E, E> {
+
+    private static final String REGEX_CHARS = "\\^$.|?*+()[]{}";
+
+    private final boolean matchAll;
+
+    private final List<Rule<E>> rules = new ArrayList<>();
+
+    /**
+     * Field -> exact value -> indexes of the rules matching it, in rule order
+     */
+    private final Map<String, Map<String, List<Integer>>> exactMatches = new LinkedHashMap<>();
+
+    private Func1<E, E> otherwise = e -> e;
+
+    public Router(boolean matchAll) {
+        this.matchAll = matchAll;
+    }
+
+    /**
+     * Same as Core.ifMatch(field, value).map(func)
+     */
+    public Router<E> ifMatch(String field, String value, Func1<E, E> func) {
+        if (isExact(value)) {
+            exactMatches.computeIfAbsent(field, f -> new HashMap<>())
+                    .computeIfAbsent(value, v -> new ArrayList<>())
+                    .add(rules.size());
+            return add(null, func);
+        }
+        final Pattern pattern = Pattern.compile(value);
+        return add(event -> event.has(field) && pattern.matcher(event.valueAsString(field)).matches(), func);
+    }
+
+    public Router<E> ifExists(String field, Func1<E, E> func) {
+        return add(event -> event.has(field), func);
+    }
+
+    public Router<E> ifNotExists(String field, Func1<E, E> func) {
+        return add(event -> !event.has(field), func);
+    }
+
+    public Router<E> when(ConditionalFunc1.Condition condition, Func1<E, E> func) {
+        return add(condition, func);
+    }
+
+    /**
+     * Invoked if no rule matches
+     */
+    public Router<E> otherwise(Func1<E, E> func) {
+        this.otherwise = func;
+        return this;
+    }
+
+    private Router<E> add(ConditionalFunc1.Condition condition, Func1<E, E> func) {
+        rules.add(new Rule<>(condition, func));
+        return this;
+    }
+
+    @Override
+    public E call(E event) {
+        if (matchAll) {
+            return applyAll(event);
+        }
+        int first = rules.size();
+        for (Map.Entry<String, Map<String, List<Integer>>> entry : exactMatches.entrySet()) {
+            List<Integer> matching = lookup(event, entry.getKey(), entry.getValue());
+            if (matching != null) {
+                first = Math.min(first, matching.get(0));
+            }
+        }
+        for (int i = 0; i < first; i++) {
+            Rule<E> rule = rules.get(i);
+            if (rule.condition != null && rule.condition.match(event)) {
+                first = i;
+                break;
+            }
+        }
+        return first < rules.size() ? rules.get(first).func.call(event) : otherwise.call(event);
+    }
+
+    private E applyAll(E event) {
+        boolean[] matches = new boolean[rules.size()];
+        boolean any = false;
+        for (Map.Entry<String, Map<String, List<Integer>>> entry : exactMatches.entrySet()) {
+            List<Integer> matching = lookup(event, entry.getKey(), entry.getValue());
+            if (matching != null) {
+                for (int index : matching) {
+                    matches[index] = true;
+                }
+                any = true;
+            }
+        }
+        for (int i = 0; i < matches.length; i++) {
+            Rule<E> rule = rules.get(i);
+            if (rule.condition != null && rule.condition.match(event)) {
+                matches[i] = true;
+                any = true;
+            }
+        }
+        if (!any) {
+            return otherwise.call(event);
+        }
+        E current = event;
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i]) {
+                current = rules.get(i).func.call(current);
+            }
+        }
+        return current;
+    }
+
+    private List<Integer> lookup(E event, String field, Map<String, List<Integer>> values) {
+        if (!event.has(field)) {
+            return null;
+        }
+        return values.get(event.valueAsString(field));
+    }
+
+    private static boolean isExact(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (REGEX_CHARS.indexOf(value.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Rule<E extends Event> {
+
+        /**
+         * Null for exact matches, they are resolved by the lookup
+         */
+        final ConditionalFunc1.Condition condition;
+        final Func1<E, E> func;
+
+        Rule(ConditionalFunc1.Condition condition, Func1<E, E> func) {
+            this.condition = condition;
+            this.func = func;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.FloatNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+/**
+ * Types that extracted values can be converted to, e.g. the int in %{NUMBER:port:int}
+ */
+enum ValueType {
+
+    STRING, INT, LONG, FLOAT, DOUBLE, BOOLEAN;
+
+    /**
+     * Returns null if the type is not supported. Dates are kept as strings.
+     */
+    static ValueType of(String name) {
+        switch (name) {
+            case "string":
+            case "date":
+            case "datetime": return STRING;
+            case "byte":
+            case "short":
+            case "int":     return INT;
+            case "long":    return LONG;
+            case "float":   return FLOAT;
+            case "double":  return DOUBLE;
+            case "boolean": return BOOLEAN;
+            default:        return null;
+        }
+    }
+
+    /**
+     * Throws NumberFormatException if the value can not be converted
+     */
+    JsonNode convert(String value) {
+        switch (this) {
+            case INT:     return IntNode.valueOf(Integer.parseInt(value));
+            case LONG:    return LongNode.valueOf(Long.parseLong(value));
+            case FLOAT:   return FloatNode.valueOf(Float.parseFloat(value));
+            case DOUBLE:  return DoubleNode.valueOf(Double.parseDouble(value));
+            case BOOLEAN: return BooleanNode.valueOf(Boolean.parseBoolean(value));
+            default:      return TextNode.valueOf(value);
+        }
+    }
+}
@@ -17,9 +17,11 @@ package lumbermill;
 import org.junit.Test;
 import lumbermill.api.Codecs;
 import lumbermill.api.JsonEvent;
+import lumbermill.internal.transformers.Router;
 import rx.Observable;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static lumbermill.internal.MapWrap.of;
@@ -31,6 +33,8 @@ import static lumbermill.Core.ifExists;
 import static lumbermill.Core.ifMatch;
 import static lumbermill.Core.ifNotExists;
 import static lumbermill.Core.params;
+import static lumbermill.Core.splitJson;
+import static lumbermill.Core.timestampFromMs;
 
 public class CoreTest {
 
@@ -41,6 +45,30 @@ public class CoreTest {
         assertThat(eventWithRenamedTime.valueAsString("@timestamp")).isEqualTo("2016-01-01T22:00:00Z");
     }
 
+    @Test
+    public void testTimestampFromMsNestedField() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"request\":{\"time\":1451685600000,\"text\":\"1451685600000\"}}");
+        timestampFromMs("[request][time]", "number").call(event);
+        timestampFromMs("[request][text]", "text").call(event);
+        assertThat(event.valueAsString("number")).startsWith("2016-01-01T");
+        assertThat(event.valueAsString("text")).isEqualTo(event.valueAsString("number"));
+    }
+
+    @Test
+    public void testSplitJson() {
+        List<JsonEvent> events = Observable.just(Codecs.BYTES.from("{\"id\":1}\n{\"id\":2}\n\n{\"id\":3}\n"))
+                .flatMap(splitJson())
+                .toList().toBlocking().single();
+        assertThat(events).hasSize(3);
+        assertThat(events.get(2).valueAsString("id")).isEqualTo("3");
+
+        events = Observable.just(Codecs.BYTES.from("[{\"id\":1}, {\"id\":2}]"))
+                .flatMap(splitJson())
+                .toList().toBlocking().single();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(1).valueAsString("id")).isEqualTo("2");
+    }
+
     @Test
     public void testIfExistsAdd() {
         JsonEvent event = Codecs.TEXT_TO_JSON.from("Hello there");
@@ -84,6 +112,60 @@ public class CoreTest {
         assertThat(event.has("foundagain")).isFalse();
     }
 
+    @Test
+    public void testRouteFirstMatch() {
+        Router<JsonEvent> router = Core.<JsonEvent>route()
+                .ifMatch("type", "elb", e -> e.put("route", "elb"))
+                .ifMatch("message", ".*ERROR.*", e -> e.put("route", "error"))
+                .ifMatch("type", "cloudfront", e -> e.put("route", "cloudfront"))
+                .otherwise(e -> e.put("route", "default"));
+
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ERROR").put("type", "cloudfront"))
+                .valueAsString("route")).isEqualTo("error");
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ERROR").put("type", "elb"))
+                .valueAsString("route")).isEqualTo("elb");
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ok").put("type", "cloudfront"))
+                .valueAsString("route")).isEqualTo("cloudfront");
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ok"))
+                .valueAsString("route")).isEqualTo("default");
+    }
+
+    @Test
+    public void testRouteAll() {
+        Router<JsonEvent> router = Core.<JsonEvent>routeAll()
+                .ifMatch("type", "elb", e -> e.put("elb", true))
+                .ifExists("type", e -> e.put("type", "changed"))
+                .ifMatch("type", "changed", e -> e.put("never", true));
+
+        JsonEvent event = router.call(Codecs.TEXT_TO_JSON.from("ok").put("type", "elb"));
+        assertThat(event.has("elb")).isTrue();
+        assertThat(event.valueAsString("type")).isEqualTo("changed");
+        assertThat(event.has("never")).isFalse();
+    }
+
+    @Test
+    public void testRouteAllMixedRulesInOrder() {
+        Router<JsonEvent> router = Core.<JsonEvent>routeAll()
+                .ifMatch("type", "elb", e -> append(e, "exact"))
+                .ifMatch("type", "e.*", e -> append(e, "regex"))
+                .ifMatch("type", "elb", e -> append(e, "exact again"))
+                .ifMatch("type", "cloud.*", e -> append(e, "never"))
+                .otherwise(e -> append(e, "otherwise"));
+
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ok").put("type", "elb"))
+                .valueAsString("order")).isEqualTo("/exact/regex/exact again");
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ok").put("type", "edge"))
+                .valueAsString("order")).isEqualTo("/regex");
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ok").put("type", "alb"))
+                .valueAsString("order")).isEqualTo("/otherwise");
+        assertThat(router.call(Codecs.TEXT_TO_JSON.from("ok"))
+                .valueAsString("order")).isEqualTo("/otherwise");
+    }
+
+    private static JsonEvent append(JsonEvent event, String rule) {
+        return event.put("order", (event.has("order") ? event.valueAsString("order") : "") + "/" + rule);
+    }
+
     @Test
     public void testParamExtraction() {
 
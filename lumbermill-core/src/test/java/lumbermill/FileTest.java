@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.JsonEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static lumbermill.internal.MapWrap.of;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLinesAreEmittedOnRequest() throws IOException {
+        Path file = writeLines(10_000);
+        TestSubscriber<JsonEvent> subscriber = new TestSubscriber<>(0);
+
+        Observable.just(Codecs.TEXT_TO_JSON.from("{}"))
+                .flatMap(Core.file.<JsonEvent>lines(of("file", file.toString()).toMap()), 1)
+                .subscribe(subscriber);
+        subscriber.assertNoValues();
+
+        subscriber.requestMore(3);
+        subscriber.assertValueCount(3);
+        assertThat(subscriber.getOnNextEvents().get(2).valueAsString("message")).isEqualTo("line 2");
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.assertValueCount(10_000);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void testUnsubscribeStopsReading() throws IOException {
+        Path file = writeLines(10_000);
+
+        List<JsonEvent> events = Core.file.<JsonEvent>readFileAsLines(of("file", file.toString()).toMap())
+                .take(5)
+                .toList().toBlocking().single();
+
+        assertThat(events).hasSize(5);
+        assertThat(events.get(4).valueAsString("message")).isEqualTo("line 4");
+    }
+
+    @Test
+    public void testParallelLinesKeepOrder() throws IOException {
+        Path file = writeLines(10_000);
+
+        List<JsonEvent> events = Core.file.<JsonEvent>readFileAsLines(of("file", file.toString(),
+                "parallel", true, "parallelism", 4, "chunkSize", 1000).toMap())
+                .toList().toBlocking().single();
+
+        assertThat(events).hasSize(10_000);
+        for (int i = 0; i < events.size(); i++) {
+            assertThat(events.get(i).valueAsString("message")).isEqualTo("line " + i);
+        }
+    }
+
+    @Test
+    public void testParallelLinesUnordered() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "first\r\n\nthird line without newline".getBytes());
+
+        List<String> lines = Core.file.<JsonEvent>readFileAsLines(of("file", file.toString(),
+                "parallel", true, "ordered", false, "chunkSize", 4).toMap())
+                .map(e -> e.valueAsString("message"))
+                .toList().toBlocking().single();
+
+        assertThat(lines).containsOnly("first", "", "third line without newline");
+        assertThat(lines).hasSize(3);
+    }
+
+    @Test
+    public void testParallelLinesEndLikeSequential() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "first\rsecond\r\nthird\n\r\rlast\r".getBytes());
+
+        for (int chunkSize : new int[] {1, 2, 5, 6, 7, 1000}) {
+            List<String> lines = Core.file.<JsonEvent>readFileAsLines(of("file", file.toString(),
+                    "parallel", true, "chunkSize", chunkSize).toMap())
+                    .map(e -> e.valueAsString("message"))
+                    .toList().toBlocking().single();
+            assertThat(lines).as("chunkSize " + chunkSize).containsExactly("first", "second", "third", "", "", "last");
+        }
+        List<String> sequential = Core.file.<JsonEvent>readFileAsLines(of("file", file.toString()).toMap())
+                .map(e -> e.valueAsString("message"))
+                .toList().toBlocking().single();
+        assertThat(sequential).containsExactly("first", "second", "third", "", "", "last");
+    }
+
+    @Test
+    public void testGzipFileIsDecompressedWhileReading() throws IOException {
+        Path file = writeLines(10_000);
+        Path gzip = folder.getRoot().toPath().resolve("lines.log.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            Files.copy(file, out);
+        }
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            List<JsonEvent> events = Core.file.<JsonEvent>readFileAsLines(of("file", gzip.toString(),
+                    "parallel", parallel).toMap())
+                    .toList().toBlocking().single();
+
+            assertThat(events).hasSize(10_000);
+            assertThat(events.get(9_999).valueAsString("message")).isEqualTo("line 9999");
+        }
+    }
+
+    private Path writeLines(int count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("line " + i);
+        }
+        return Files.write(folder.newFile().toPath(), lines);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FieldPathTest {
+
+    private static final String CLOUDTRAIL =
+            "{\"requestParameters\":{\"bucketName\":\"logs\"},\"Records\":[{\"id\":\"first\"},{\"id\":\"second\"}]}";
+
+    @Test
+    public void testReadNestedFields() {
+        JsonEvent event = Codecs.JSON_OBJECT.from(CLOUDTRAIL);
+        assertThat(event.has(FieldPath.compile("[requestParameters][bucketName]"))).isTrue();
+        assertThat(event.valueAsString(FieldPath.compile("[requestParameters][bucketName]"))).isEqualTo("logs");
+        assertThat(event.valueAsString(FieldPath.compile("[Records][1][id]"))).isEqualTo("second");
+        assertThat(event.has(FieldPath.compile("[Records][2][id]"))).isFalse();
+        assertThat(event.has(FieldPath.compile("[requestParameters][missing]"))).isFalse();
+    }
+
+    @Test
+    public void testTopLevelFieldIncludesMetaData() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{}");
+        event.putMetaData("meta", "data");
+        assertThat(FieldPath.compile("meta").isTopLevel()).isTrue();
+        assertThat(event.valueAsString(FieldPath.compile("meta"))).isEqualTo("data");
+    }
+
+    @Test
+    public void testPutAndRemoveNestedFields() {
+        JsonEvent event = Codecs.JSON_OBJECT.from(CLOUDTRAIL);
+        event.put(FieldPath.compile("[a][b]"), "c");
+        event.put(FieldPath.compile("[Records][0][id]"), "changed");
+        event.remove(FieldPath.compile("[requestParameters][bucketName]"), FieldPath.compile("[Records][1]"));
+        assertThat(event.raw().utf8()).isEqualTo(
+                "{\"requestParameters\":{},\"Records\":[{\"id\":\"changed\"}],\"a\":{\"b\":\"c\"}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPath() {
+        FieldPath.compile("[a]b]");
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import okio.ByteString;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonEventTest {
+
+    @Test
+    public void testRawIsCachedUntilModified() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"id\":\"abc\"}");
+        ByteString raw = event.raw();
+        assertThat(event.raw()).isSameAs(raw);
+
+        event.put("code", 200);
+        assertThat(event.raw().utf8()).isEqualTo("{\"id\":\"abc\",\"code\":200}");
+
+        event.remove("id");
+        assertThat(event.raw().utf8()).isEqualTo("{\"code\":200}");
+
+        event.addTag("tag");
+        assertThat(event.raw().utf8()).isEqualTo("{\"code\":200,\"tags\":[\"tag\"]}");
+    }
+
+    @Test
+    public void testRawIsNotCachedWhenChildIsShared() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"child\":{\"id\":\"abc\"}}");
+        JsonEvent child = event.objectChild("child");
+        assertThat(event.raw().utf8()).isEqualTo("{\"child\":{\"id\":\"abc\"}}");
+
+        child.put("id", "def");
+        assertThat(event.raw().utf8()).isEqualTo("{\"child\":{\"id\":\"def\"}}");
+    }
+
+    @Test
+    public void testBinaryCodecsRoundtrip() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"id\":\"abc\",\"code\":200,\"tags\":[\"a\"]}");
+        for (BinaryJsonCodec codec : new BinaryJsonCodec[] {Codecs.SMILE, Codecs.CBOR}) {
+            ByteString encoded = codec.encode(event);
+            assertThat(encoded).isNotEqualTo(event.raw());
+            JsonEvent decoded = codec.from(encoded);
+            assertThat(decoded.raw()).isEqualTo(event.raw());
+            assertThat(decoded.valueAsString("id")).isEqualTo("abc");
+        }
+    }
+}
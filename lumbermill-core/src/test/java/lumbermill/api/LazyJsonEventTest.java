@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.api;
+
+import okio.ByteString;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazyJsonEventTest {
+
+    private static final ByteString JSON = ByteString.encodeUtf8("{ \"id\" : \"abc\",  \"code\" : 200 }");
+
+    @Test
+    public void testRawIsPassedThroughWhenNotModified() {
+        LazyJsonEvent event = (LazyJsonEvent) Codecs.LAZY_JSON_OBJECT.from(JSON);
+        assertThat(event.isParsed()).isFalse();
+        assertThat(event.raw()).isSameAs(JSON);
+
+        assertThat(event.valueAsString("id")).isEqualTo("abc");
+        assertThat(event.isParsed()).isTrue();
+        assertThat(event.raw()).isSameAs(JSON);
+    }
+
+    @Test
+    public void testRawIsSerializedWhenModified() {
+        JsonEvent event = Codecs.LAZY_JSON_OBJECT.from(JSON).put("type", "elb");
+        assertThat(event.raw().utf8()).isEqualTo("{\"id\":\"abc\",\"code\":200,\"type\":\"elb\"}");
+    }
+
+    @Test
+    public void testMultiLineJsonIsWrittenOnOneLine() {
+        ByteString pretty = ByteString.encodeUtf8("{\n  \"id\" : \"abc\",\r\n  \"code\" : 200\n}\n");
+        JsonEvent event = Codecs.LAZY_JSON_OBJECT.from(pretty);
+        assertThat(event.raw().utf8()).isEqualTo("{\"id\":\"abc\",\"code\":200}");
+        assertThat(event.toString(false)).isEqualTo("{\"id\":\"abc\",\"code\":200}");
+    }
+}
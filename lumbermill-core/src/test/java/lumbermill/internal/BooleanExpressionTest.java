@@ -14,8 +14,11 @@
  */
 package lumbermill.internal;
 
+import lumbermill.api.FieldPath;
 import org.junit.Test;
 
+import java.util.stream.IntStream;
+
 import static lumbermill.internal.BooleanExpression.fromString;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -122,5 +125,26 @@ public class BooleanExpressionTest {
         BooleanExpression booleanExpression = fromString("'{value}' != null");
         assertThat(booleanExpression.eval(TEXT_TO_JSON.from("pelle").put("key", "value"))).isFalse();
     }
-}
 
+    @Test
+    public void testRegexAndArithmetic() {
+        BooleanExpression booleanExpression = fromString("{message} =~ 'ERR' && !{message}.matches('.*timeout') " +
+                "&& ({bytes} / 1024) >= 2 && {[request][verb]} == 'GET'");
+        assertThat(booleanExpression.eval(TEXT_TO_JSON.from("ERROR failed").put("bytes", 2048)
+                .put(FieldPath.compile("[request][verb]"), "GET"))).isTrue();
+        assertThat(booleanExpression.eval(TEXT_TO_JSON.from("ERROR timeout").put("bytes", 2048))).isFalse();
+    }
+
+    @Test
+    public void testEvalFromMultipleThreads() {
+        BooleanExpression booleanExpression = fromString("{code} >= 500 && '{env}' == 'prod'");
+        assertThat(IntStream.range(0, 10000).parallel()
+                .filter(i -> booleanExpression.eval(TEXT_TO_JSON.from("test").put("code", i % 1000).put("env", "prod")))
+                .count()).isEqualTo(5000);
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void testInvalidExpression() {
+        fromString("{code} == ");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import okio.ByteString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * LZ4, Snappy and Zstandard compression of events and files
+ */
+public class CompressionFormatsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLz4() {
+        ByteString large = events(0, 100);
+        assertThat(Lz4Compression.decompress(Lz4Compression.compress(event(1), Lz4Compression.FAST))).isEqualTo(event(1));
+        assertThat(Lz4Compression.decompress(Lz4Compression.compress(large, 9))).isEqualTo(large);
+        assertThat(Lz4Compression.compress(large, Lz4Compression.FAST).size()).isLessThan(large.size() / 4);
+        assertThat(Lz4Compression.decompress(Lz4Compression.compress(ByteString.EMPTY, 0))).isEqualTo(ByteString.EMPTY);
+    }
+
+    @Test
+    public void testSnappy() {
+        ByteString large = events(0, 100);
+        assertThat(SnappyCompression.decompress(SnappyCompression.compress(event(1)))).isEqualTo(event(1));
+        assertThat(SnappyCompression.decompress(SnappyCompression.compress(large))).isEqualTo(large);
+        assertThat(SnappyCompression.compress(large).size()).isLessThan(large.size() / 4);
+    }
+
+    @Test
+    public void testZstd() {
+        ByteString large = events(0, 100);
+        ZstdCompression zstd = new ZstdCompression(ZstdCompression.DEFAULT_LEVEL, null);
+        assertThat(zstd.decompress(zstd.compress(event(1)))).isEqualTo(event(1));
+        assertThat(zstd.decompress(zstd.compress(large))).isEqualTo(large);
+        assertThat(zstd.compress(large).size()).isLessThan(large.size() / 10);
+    }
+
+    @Test
+    public void testZstdDictionaryImprovesRatioOfSmallEvents() {
+        List<ByteString> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(event(i));
+        }
+        ByteString dictionary = ZstdCompression.train(samples, 16 * 1024);
+        ZstdCompression withDictionary = new ZstdCompression(ZstdCompression.DEFAULT_LEVEL, dictionary);
+        ZstdCompression withoutDictionary = new ZstdCompression(ZstdCompression.DEFAULT_LEVEL, null);
+
+        ByteString event = event(4711);
+        ByteString compressed = withDictionary.compress(event);
+        assertThat(compressed.size()).isLessThan(withoutDictionary.compress(event).size() / 2);
+        assertThat(withDictionary.decompress(compressed)).isEqualTo(event);
+        try {
+            withoutDictionary.decompress(compressed);
+            fail("Expected decompression without dictionary to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCorruptDataFails() {
+        ByteString event = event(1);
+        ZstdCompression zstd = new ZstdCompression(ZstdCompression.DEFAULT_LEVEL, null);
+        assertFails(() -> Lz4Compression.decompress(Lz4Compression.compress(event, 0).substring(0, 10)));
+        assertFails(() -> SnappyCompression.decompress(SnappyCompression.compress(event).substring(0, 10)));
+        assertFails(() -> zstd.decompress(zstd.compress(event).substring(0, 20)));
+        assertFails(() -> zstd.decompress(event));
+
+        // Declared sizes far beyond what the input can expand to must fail before allocating
+        assertFails(() -> Lz4Compression.decompress(bytes(0x7f, 0xff, 0xff, 0xff, 0, 0)));
+        assertFails(() -> SnappyCompression.decompress(bytes(0xff, 0xff, 0xff, 0xff, 0x07, 0)));
+        // Frame declaring 2^40 bytes of content, followed by an empty last raw block
+        assertFails(() -> zstd.decompress(bytes(0x28, 0xb5, 0x2f, 0xfd, 0xe0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0)));
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), events(0, 1000).toByteArray());
+        ZstdCompression zstd = new ZstdCompression(9, null);
+
+        assertRoundTrip(file, Lz4Compression.compress(file, 0), Lz4Compression::decompress);
+        assertRoundTrip(file, SnappyCompression.compress(file), SnappyCompression::decompress);
+        assertRoundTrip(file, zstd.compress(file), zstd::decompress);
+    }
+
+    private static void assertRoundTrip(File original, File compressed, Function<File, File> decompress) {
+        File decompressed = decompress.apply(compressed);
+        assertThat(compressed.length()).isLessThan(original.length() / 4);
+        assertThat(Streams.read(decompressed)).isEqualTo(Streams.read(original));
+        assertThat(compressed.delete() && decompressed.delete()).isTrue();
+    }
+
+    private static ByteString bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return ByteString.of(bytes);
+    }
+
+    private static void assertFails(Runnable decompress) {
+        try {
+            decompress.run();
+            fail("Expected corrupt data to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    private static ByteString events(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sb.append(event(i).utf8()).append('\n');
+        }
+        return ByteString.encodeUtf8(sb.toString());
+    }
+
+    private static ByteString event(int i) {
+        return ByteString.encodeUtf8("{\"@timestamp\":\"2016-05-10T12:" + (i / 60 % 60) + ":" + (i % 60) + ".123Z\","
+                + "\"message\":\"my-elb 10.0." + (i % 7) + "." + (i % 255) + ":" + (40000 + i)
+                + " 10.0.1.12:80 0.000042 0.001 0.00003 200 200 0 " + (i * 31 % 5000)
+                + " \\\"GET http://example.com:80/items/" + i + " HTTP/1.1\\\"\","
+                + "\"type\":\"elb\",\"tags\":[\"aws\",\"elb\"]}");
+    }
+}
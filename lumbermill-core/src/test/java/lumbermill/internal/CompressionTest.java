@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class CompressionTest {
+
+    private static final ByteString EVENT = ByteString.encodeUtf8(
+            "{\"@timestamp\":\"2016-05-10T12:00:00.000Z\",\"message\":\"GET /index.html 200\",\"tags\":[\"elb\"]}");
+
+    @Test
+    public void testGzipIsReadableByGzipInputStream() throws IOException {
+        ByteString compressed = Compression.gzip(EVENT, Compression.DEFAULT_LEVEL);
+        assertThat(new Buffer().readFrom(new GZIPInputStream(
+                new ByteArrayInputStream(compressed.toByteArray()))).readByteString()).isEqualTo(EVENT);
+    }
+
+    @Test
+    public void testGunzipReadsAllMembers() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 2; i++) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                @Override
+                public void close() throws IOException {
+                    finish();
+                }
+            }) {
+                gzip.write(EVENT.toByteArray());
+            }
+        }
+
+        assertThat(Compression.gunzip(ByteString.of(out.toByteArray())).utf8()).isEqualTo(EVENT.utf8() + EVENT.utf8());
+    }
+
+    @Test
+    public void testZlibIsCompatibleWithDeflaterStreams() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(EVENT.toByteArray());
+        }
+        assertThat(Compression.unzlib(ByteString.of(out.toByteArray()))).isEqualTo(EVENT);
+
+        ByteString compressed = Compression.zlib(EVENT, 9);
+        assertThat(new Buffer().readFrom(new InflaterInputStream(
+                new ByteArrayInputStream(compressed.toByteArray()))).readByteString()).isEqualTo(EVENT);
+    }
+
+    @Test
+    public void testReusedAfterCorruptData() {
+        ByteString compressed = Compression.gzip(EVENT, 1);
+        try {
+            Compression.gunzip(compressed.substring(0, compressed.size() - 12));
+            fail("Expected truncated data to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        try {
+            Compression.unzlib(EVENT);
+            fail("Expected data that is not compressed to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertThat(Compression.gunzip(compressed)).isEqualTo(EVENT);
+        assertThat(Compression.unzlib(Compression.zlib(EVENT, 0))).isEqualTo(EVENT);
+    }
+
+    @Test
+    public void testLevels() {
+        ByteString large = ByteString.encodeUtf8(new String(new char[100]).replace("\0", EVENT.utf8()));
+        assertThat(Compression.zlib(large, 0).size()).isGreaterThan(large.size());
+        assertThat(Compression.zlib(large, 9).size()).isLessThan(large.size() / 10);
+        assertThat(Compression.gunzip(Compression.gzip(large, 9))).isEqualTo(large);
+    }
+
+    @Test
+    public void testMoreThreadsThanPooled() throws Exception {
+        // Deflaters and Inflaters returned to a full pool are ended, the rest are reused
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<ByteString>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads * 10; i++) {
+                int level = i % 10;
+                tasks.add(() -> Compression.gunzip(Compression.gzip(
+                        Compression.unzlib(Compression.zlib(EVENT, level)), level)));
+            }
+            for (Future<ByteString> result : executor.invokeAll(tasks)) {
+                assertThat(result.get()).isEqualTo(EVENT);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        Compression.level(10);
+    }
+}
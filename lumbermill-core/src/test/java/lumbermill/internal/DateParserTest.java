@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DateParserTest {
+
+    @Test
+    public void testIso8601() {
+        assertThat(DateParser.parseIso8601("2016-03-11T12:15:11.451Z"))
+                .isEqualTo(ZonedDateTime.parse("2016-03-11T12:15:11.451Z"));
+        assertThat(DateParser.parseIso8601("2016-03-11T13:15:11.123456789+01:00"))
+                .isEqualTo(ZonedDateTime.parse("2016-03-11T13:15:11.123456789+01:00"));
+        assertThat(DateParser.parseIso8601("2016-03-11 13:15-0130").toInstant())
+                .isEqualTo(Instant.parse("2016-03-11T14:45:00Z"));
+        assertThat(DateParser.parseIso8601("2016-03-11").toInstant())
+                .isEqualTo(Instant.parse("2016-03-11T00:00:00Z"));
+        assertThat(DateParser.parseIso8601("2016-13-11T12:15:11Z")).isNull();
+        assertThat(DateParser.parseIso8601("2016-02-30T12:15:11Z")).isNull();
+        assertThat(DateParser.parseIso8601("2016-03-11T12:15:11 extra")).isNull();
+        assertThat(DateParser.parseIso8601("11/Mar/2016:12:15:11 +0000")).isNull();
+    }
+
+    @Test
+    public void testEpoch() {
+        assertThat(DateParser.parseEpochMillis("1457698511451").toInstant())
+                .isEqualTo(Instant.parse("2016-03-11T12:15:11.451Z"));
+        assertThat(DateParser.parseEpochSeconds("1457698511").toInstant())
+                .isEqualTo(Instant.parse("2016-03-11T12:15:11Z"));
+        assertThat(DateParser.parseEpochSeconds("1457698511.45").toInstant())
+                .isEqualTo(Instant.parse("2016-03-11T12:15:11.450Z"));
+        assertThat(DateParser.parseEpochMillis("-")).isNull();
+        assertThat(DateParser.parseEpochSeconds("1457698511.x")).isNull();
+    }
+
+    @Test
+    public void testFirstMatchingFormatIsUsed() {
+        DateParser parser = DateParser.of("yyyy-MM-dd'T'HH", "dd/MMM/yyyy:HH:mm:ss Z", DateParser.UNIX_MS);
+
+        assertThat(parser.parse("11/Mar/2016:13:15:11 +0100").toInstant())
+                .isEqualTo(Instant.parse("2016-03-11T12:15:11Z"));
+        assertThat(parser.parse("2016-01-01T22").toInstant())
+                .isEqualTo(Instant.parse("2016-01-01T22:00:00Z"));
+        assertThat(parser.parse("1457698511451").toInstant())
+                .isEqualTo(Instant.parse("2016-03-11T12:15:11.451Z"));
+        assertThat(parser.parse("not a date")).isNull();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import lumbermill.api.Codecs;
+import lumbermill.api.JsonEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileTailTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> received = new ArrayList<>();
+
+    private final Func1<Observable<JsonEvent>, Observable<JsonEvent>> pipeline =
+            batch -> batch.doOnNext(e -> received.add(e.valueAsString("message")));
+
+    @Test
+    public void testReadsAppendedLines() throws IOException {
+        Path log = append(folder.getRoot().toPath().resolve("app.log"), "first", "second");
+        FileTail<JsonEvent> tail = tail(log.toString(), true);
+
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "second");
+
+        append(log, "third");
+        Files.write(log, "partial".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "second", "third");
+
+        append(log, " line");
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "second", "third", "partial line");
+        tail.close();
+    }
+
+    @Test
+    public void testStartsAtEndOfExistingFiles() throws IOException {
+        Path log = append(folder.getRoot().toPath().resolve("app.log"), "old");
+        FileTail<JsonEvent> tail = tail(log.toString(), false);
+
+        tail.poll(pipeline);
+        assertThat(received).isEmpty();
+
+        append(log, "new");
+        append(folder.getRoot().toPath().resolve("other.log"), "created later");
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("new");
+        tail.close();
+    }
+
+    @Test
+    public void testGlobMatchesNewFiles() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        append(dir.resolve("a.log"), "a1");
+        FileTail<JsonEvent> tail = tail(dir.resolve("*.log").toString(), false);
+        tail.poll(pipeline);
+
+        append(dir.resolve("b.log"), "b1");
+        append(dir.resolve("b.txt"), "ignored");
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("b1");
+        tail.close();
+    }
+
+    @Test
+    public void testRestartContinuesFromSinceDb() throws IOException {
+        Path log = append(folder.getRoot().toPath().resolve("app.log"), "first", "second");
+        FileTail<JsonEvent> tail = tail(log.toString(), true);
+        tail.poll(pipeline);
+        tail.close();
+
+        append(log, "third");
+        tail = tail(log.toString(), true);
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "second", "third");
+        tail.close();
+    }
+
+    @Test
+    public void testSinceDbDropsFilesRemovedWhileStopped() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        Path kept = append(dir.resolve("a.log"), "a1");
+        Path removed = append(dir.resolve("b.log"), "b1");
+        FileTail<JsonEvent> tail = tail(dir.resolve("*.log").toString(), true);
+        tail.poll(pipeline);
+        tail.close();
+        assertThat(Files.readAllLines(dir.resolve("sincedb"))).hasSize(2);
+
+        Files.delete(removed);
+        tail = tail(dir.resolve("*.log").toString(), true);
+        tail.poll(pipeline);
+        tail.close();
+        List<String> entries = Files.readAllLines(dir.resolve("sincedb"));
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0)).endsWith("\t" + kept);
+        assertThat(received).containsOnly("a1", "b1");
+    }
+
+    @Test
+    public void testFailedPipelineIsNotCheckpointed() throws IOException {
+        Path log = append(folder.getRoot().toPath().resolve("app.log"), "first", "second");
+        FileTail<JsonEvent> tail = tail(log.toString(), true);
+
+        tail.poll(batch -> batch.flatMap(e -> Observable.error(new IllegalStateException("Unavailable"))));
+        tail.close();
+
+        tail = tail(log.toString(), true);
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "second");
+
+        append(log, "third");
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "second", "third");
+        tail.close();
+    }
+
+    @Test
+    public void testLinesThatCanNotBeDecodedAreSkipped() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        Path log = append(dir.resolve("app.log"), "{\"n\":1}", "not json", "{\"n\":2}");
+        Path sinceDb = dir.resolve("sincedb");
+        List<String> numbers = new ArrayList<>();
+        FileTail<JsonEvent> tail = new FileTail<>(log.toString(), sinceDb.toString(),
+                Codecs.JSON_OBJECT, 1000, true, 1000);
+
+        tail.poll(batch -> batch.doOnNext(e -> numbers.add(e.valueAsString("n"))));
+        assertThat(numbers).containsExactly("1", "2");
+        assertThat(Files.exists(sinceDb)).isTrue();
+
+        append(log, "{\"n\":3}");
+        tail.poll(batch -> batch.doOnNext(e -> numbers.add(e.valueAsString("n"))));
+        assertThat(numbers).containsExactly("1", "2", "3");
+        tail.close();
+    }
+
+    @Test
+    public void testRotatedFileIsReadToEnd() throws IOException {
+        Path log = append(folder.getRoot().toPath().resolve("app.log"), "first");
+        FileTail<JsonEvent> tail = tail(log.toString(), true);
+        tail.poll(pipeline);
+
+        append(log, "before rotation");
+        Files.move(log, folder.getRoot().toPath().resolve("app.log.1"));
+        append(log, "after rotation");
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "before rotation", "after rotation");
+        tail.close();
+    }
+
+    @Test
+    public void testRotatedFileMatchingGlobIsNotReadTwice() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        Path log = append(dir.resolve("app.log"), "first");
+        FileTail<JsonEvent> tail = tail(dir.resolve("app.log*").toString(), true);
+        tail.poll(pipeline);
+
+        append(log, "before rotation");
+        Path rotated = Files.move(log, dir.resolve("app.log.1"));
+        append(log, "after rotation");
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "before rotation", "after rotation");
+
+        append(rotated, "late write to rotated");
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "before rotation", "after rotation", "late write to rotated");
+        tail.close();
+
+        // Both files keep their offsets
+        append(log, "after restart");
+        tail = tail(dir.resolve("app.log*").toString(), true);
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first", "before rotation", "after rotation", "late write to rotated",
+                "after restart");
+        tail.close();
+    }
+
+    @Test
+    public void testTruncatedFileIsReadFromBeginning() throws IOException {
+        Path log = append(folder.getRoot().toPath().resolve("app.log"), "first line", "second line");
+        FileTail<JsonEvent> tail = tail(log.toString(), true);
+        tail.poll(pipeline);
+
+        Files.write(log, "new\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+        tail.poll(pipeline);
+        assertThat(received).containsExactly("first line", "second line", "new");
+        tail.close();
+    }
+
+    @Test
+    public void testLinesLongerThanBufferAndBatches() throws IOException {
+        Path log = folder.getRoot().toPath().resolve("app.log");
+        StringBuilder longLine = new StringBuilder();
+        while (longLine.length() <= FileTail.BUFFER_SIZE) {
+            longLine.append("0123456789");
+        }
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            lines.add("line " + i);
+        }
+        lines.add(longLine.toString());
+        lines.add("last");
+        append(log, lines.toArray(new String[0]));
+
+        List<Integer> batchSizes = new ArrayList<>();
+        FileTail<JsonEvent> tail = tail(log.toString(), true);
+        tail.poll(batch -> pipeline.call(batch).toList().doOnNext(l -> batchSizes.add(l.size())));
+        assertThat(received).containsExactlyElementsOf(lines);
+        assertThat(batchSizes).containsExactly(1000, 1000, 502);
+        tail.close();
+    }
+
+    private FileTail<JsonEvent> tail(String path, boolean fromBeginning) {
+        String sinceDb = folder.getRoot().toPath().resolve("sincedb").toString();
+        return new FileTail<>(path, sinceDb, Codecs.TEXT_TO_JSON, 1000, fromBeginning, 1000);
+    }
+
+    private static Path append(Path file, String... lines) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return file;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SmallMapTest {
+
+    @Test
+    public void testInlineEntries() {
+        SmallMap map = new SmallMap().put("a", 1).put("b", 2).put("a", 3);
+        assertThat(map.size()).isEqualTo(2);
+        assertThat((Integer) map.get("a")).isEqualTo(3);
+        assertThat((Integer) map.get("b")).isEqualTo(2);
+        assertThat(map.containsKey("c")).isFalse();
+        assertThat((Object) map.get("c")).isNull();
+        assertThat(map.toString()).isEqualTo("{a=3, b=2}");
+    }
+
+    @Test
+    public void testEntriesPastInlineThreshold() {
+        SmallMap map = new SmallMap();
+        for (int i = 0; i < 4; i++) {
+            map.put("key" + i, i);
+        }
+        // Overwriting with four entries stays inline
+        map.put("key3", "overwritten");
+        assertThat(map.size()).isEqualTo(4);
+
+        // A fifth entry moves everything out of the inline array
+        for (int i = 4; i < 10; i++) {
+            map.put("key" + i, i);
+        }
+        map.put("key2", "overwritten").put("key8", "overwritten");
+        assertThat(map.size()).isEqualTo(10);
+        assertThat((Integer) map.get("key0")).isEqualTo(0);
+        assertThat((String) map.get("key2")).isEqualTo("overwritten");
+        assertThat((String) map.get("key3")).isEqualTo("overwritten");
+        assertThat((String) map.get("key8")).isEqualTo("overwritten");
+        assertThat((Integer) map.get("key9")).isEqualTo(9);
+        assertThat(map.containsKey("key10")).isFalse();
+    }
+}
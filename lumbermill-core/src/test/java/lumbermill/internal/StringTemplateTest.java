@@ -23,7 +23,11 @@ import lumbermill.api.Codecs;
 import lumbermill.api.Event;
 import lumbermill.api.JsonEvent;
 
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Optional;
+import java.util.TimeZone;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -63,5 +67,60 @@ public class StringTemplateTest {
         }
     }
 
+    @Test
+    public void testExtractNestedValue() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"requestParameters\":{\"bucketName\":\"logs\"}}");
+        StringTemplate t = StringTemplate.compile("s3://{[requestParameters][bucketName]}/{missing}");
+        assertThat(t.format(event).get()).isEqualTo("s3://logs/{missing}");
+    }
+
+    @Test
+    public void testRepeatedAndMissingFields() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"a\":\"x\"}");
+        assertThat(StringTemplate.compile("{a}-{a}/{b}").render(event)).isEqualTo("x-x/{b}");
+        assertThat(StringTemplate.compile("{b}/{c}").format(event).isPresent()).isFalse();
+        assertThat(StringTemplate.compile("no fields").render(event)).isEqualTo("no fields");
+    }
+
+    @Test
+    public void testDateDirectives() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"@timestamp\":\"2016-03-11T13:55:51.847305+01:00\"," +
+                "\"time\":\"2016-03-12T01:02:03Z\",\"ms\":1457704551847,\"nested\":{\"time\":\"2016-03-13T00:00:00Z\"}}");
+        assertThat(StringTemplate.compile("logs-{+yyyy.MM.dd}").render(event)).isEqualTo("logs-2016.03.11");
+        assertThat(StringTemplate.compile("{time:yyyy/MM/dd/HH}").render(event)).isEqualTo("2016/03/12/01");
+        assertThat(StringTemplate.compile("{ms:yyyy-MM-dd HH:mm}").render(event)).isEqualTo("2016-03-11 13:55");
+        assertThat(StringTemplate.compile("{[nested][time]:yyyy.MM.dd}").render(event)).isEqualTo("2016.03.13");
+        assertThat(StringTemplate.compile("{missing:yyyy}").format(event).isPresent()).isFalse();
 
+        // Cached per day, but must follow a new day
+        StringTemplate daily = StringTemplate.compile("{time:yyyy.MM.dd}");
+        assertThat(daily.render(event)).isEqualTo("2016.03.12");
+        event.put("time", "2016-03-14T01:02:03Z");
+        assertThat(daily.render(event)).isEqualTo("2016.03.14");
+        event.put("time", "2016-03-14T01:02:03");
+        assertThat(daily.render(event)).isEqualTo("2016.03.14");
+
+        // Cached per second for epoch millis
+        StringTemplate seconds = StringTemplate.compile("{ms:HH:mm:ss}");
+        assertThat(seconds.render(event)).isEqualTo("13:55:51");
+        event.put("ms", 1457704551999L);
+        assertThat(seconds.render(event)).isEqualTo("13:55:51");
+        event.put("ms", 1457704552000L);
+        assertThat(seconds.render(event)).isEqualTo("13:55:52");
+    }
+
+    @Test
+    public void testCurrentDateIsUtc() {
+        JsonEvent event = Codecs.JSON_OBJECT.from("{\"message\":\"no timestamp\"}");
+        TimeZone defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        try {
+            String before = DateTimeFormatter.ofPattern("yyyy.MM.dd.HH").format(ZonedDateTime.now(ZoneOffset.UTC));
+            String rendered = StringTemplate.compile("{+yyyy.MM.dd.HH}").render(event);
+            String after = DateTimeFormatter.ofPattern("yyyy.MM.dd.HH").format(ZonedDateTime.now(ZoneOffset.UTC));
+            assertThat(rendered).isIn(before, after);
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimestampRendererTest {
+
+    @Test
+    public void testRendererIsSameAsIsoOffsetDateTime() {
+        TimestampRenderer renderer = new TimestampRenderer(ZoneOffset.UTC);
+        Random random = new Random(17);
+        ZoneId[] zones = {ZoneOffset.UTC, ZoneId.of("UTC"), ZoneId.of("Europe/Stockholm"), ZoneOffset.ofHours(-5)};
+        long millis = Instant.parse("2016-03-11T12:15:11Z").toEpochMilli();
+        for (int i = 0; i < 1000; i++) {
+            millis += random.nextInt(400);
+            int nanos = i % 3 == 0 ? 0 : i % 3 == 1 ? (int) (millis % 1000) * 1_000_000 : random.nextInt(1_000_000_000);
+            ZonedDateTime date = Instant.ofEpochSecond(millis / 1000, nanos).atZone(zones[i % zones.length]);
+            assertThat(renderer.format(date)).isEqualTo(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(date));
+        }
+    }
+
+    @Test
+    public void testRendererFromEpochMillis() {
+        ZoneId zone = ZoneId.of("Europe/Stockholm");
+        TimestampRenderer renderer = new TimestampRenderer(zone);
+        long millis = Instant.parse("2016-03-27T00:59:58Z").toEpochMilli();
+        for (int i = 0; i < 5000; i += 7) {
+            assertThat(renderer.format(millis + i))
+                    .isEqualTo(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(millis + i).atZone(zone)));
+        }
+    }
+}
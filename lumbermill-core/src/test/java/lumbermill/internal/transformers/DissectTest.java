@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import lumbermill.api.JsonEvent;
+import org.junit.Test;
+
+import static lumbermill.api.Codecs.TEXT_TO_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DissectTest {
+
+    static final String ELB_PATTERN = "%{timestamp} %{loadbalancer} %{client_ip}:%{client_port:int} " +
+            "%{backend_ip}:%{backend_port:int} %{request_processing_time:float} %{backend_processing_time:float} " +
+            "%{response_processing_time:float} %{elb_status_code:int} %{backend_status_code:int} " +
+            "%{received_bytes:int} %{sent_bytes:int} \"%{verb} %{request} HTTP/%{httpversion}\" " +
+            "\"%{useragent}\" %{ssl_cipher} %{ssl_protocol}";
+
+    static final String ELB_ROW = "2016-03-11T13:55:51.847305Z prod-apig-LoadBala-W1C506EG6RQ4 " +
+            "216.137.32.245:43649 172.31.39.241:80 0.000044 1.212816 0.000041 400 400 145 25 " +
+            "\"POST https://platform.lifelog.sonymobile.com:443/oauth/2/refresh_token HTTP/1.1\" " +
+            "\"Apache-HttpClient/4.3.6 (java 1.5)\" ECDHE-RSA-AES128-SHA TLSv1";
+
+    @Test
+    public void testElbRow() {
+        JsonEvent event = new Dissect("message", ELB_PATTERN, true, Dissect.ERROR_TAG)
+                .call(TEXT_TO_JSON.from(ELB_ROW));
+
+        assertThat(event.valueAsString("timestamp")).isEqualTo("2016-03-11T13:55:51.847305Z");
+        assertThat(event.valueAsString("client_ip")).isEqualTo("216.137.32.245");
+        assertThat(event.valueAsString("verb")).isEqualTo("POST");
+        assertThat(event.valueAsString("httpversion")).isEqualTo("1.1");
+        assertThat(event.valueAsString("useragent")).isEqualTo("Apache-HttpClient/4.3.6 (java 1.5)");
+        assertThat(event.valueAsString("ssl_protocol")).isEqualTo("TLSv1");
+        assertThat(event.toString(false)).contains("\"client_port\":43649", "\"backend_processing_time\":1.212816");
+        assertThat(event.hasTag(Dissect.ERROR_TAG)).isFalse();
+    }
+
+    @Test
+    public void testSkipNestedAndPadding() {
+        JsonEvent event = new Dissect("message", "%{level->} %{} %{?ignored} %{[source][host]}: %{msg}",
+                true, Dissect.ERROR_TAG)
+                .call(TEXT_TO_JSON.from("INFO   12 34 web-1: started in 3 ms"));
+
+        assertThat(event.valueAsString("level")).isEqualTo("INFO");
+        assertThat(event.has("ignored")).isFalse();
+        assertThat(event.toString(false)).contains("\"source\":{\"host\":\"web-1\"}");
+        assertThat(event.valueAsString("msg")).isEqualTo("started in 3 ms");
+    }
+
+    @Test
+    public void testNothingIsWrittenIfPatternDoesNotMatch() {
+        JsonEvent event = new Dissect("message", "%{a} %{b}|%{c}", true, Dissect.ERROR_TAG)
+                .call(TEXT_TO_JSON.from("one two three"));
+
+        assertThat(event.has("a")).isFalse();
+        assertThat(event.hasTag(Dissect.ERROR_TAG)).isTrue();
+    }
+
+    @Test
+    public void testInvalidNumberIsKeptAsString() {
+        JsonEvent event = new Dissect("message", "%{status:int} %{rest}", true, Dissect.ERROR_TAG)
+                .call(TEXT_TO_JSON.from("- done"));
+
+        assertThat(event.valueAsString("status")).isEqualTo("-");
+        assertThat(event.has("status_dissectfailure")).isTrue();
+        assertThat(event.hasTag(Dissect.ERROR_TAG)).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdjacentFieldsAreRejected() {
+        new Dissect("message", "%{a}%{b}", true, Dissect.ERROR_TAG);
+    }
+}
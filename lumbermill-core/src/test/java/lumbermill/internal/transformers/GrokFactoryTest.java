@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import lumbermill.api.JsonEvent;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static lumbermill.api.Codecs.TEXT_TO_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GrokFactoryTest {
+
+    @Test
+    public void testCustomPatternsAreSeparateCacheEntries() {
+        Grok<JsonEvent> custom = GrokFactory.create("message", "%{ID:id}",
+                Collections.singletonMap("ID", "[a-z]{3}"), true, GrokFactory.ERROR_TAG);
+        Grok<JsonEvent> other = GrokFactory.create("message", "%{ID:id}",
+                Collections.singletonMap("ID", "[0-9]{3}"), true, GrokFactory.ERROR_TAG);
+
+        assertThat(custom.parse(TEXT_TO_JSON.from("abc")).toBlocking().single().valueAsString("id"))
+                .isEqualTo("abc");
+        assertThat(other.parse(TEXT_TO_JSON.from("abc")).toBlocking().single().hasTag(GrokFactory.ERROR_TAG))
+                .isTrue();
+        assertThat(other.parse(TEXT_TO_JSON.from("123")).toBlocking().single().valueAsString("id"))
+                .isEqualTo("123");
+    }
+
+    @Test
+    public void testCapturesAreWrittenWithTypes() {
+        Grok<JsonEvent> grok = GrokFactory.create("message", "%{AWS_ELB_LOG}");
+        JsonEvent event = grok.parse(TEXT_TO_JSON.from("2016-03-11T13:55:51.847305Z prod-apig-LoadBala-W1C506EG6RQ4 " +
+                        "216.137.32.245:43649 172.31.39.241:80 0.000044 1.212816 0.000041 400 400 145 25 " +
+                        "\"POST https://platform.lifelog.sonymobile.com:443/oauth/2/refresh_token HTTP/1.1\" " +
+                        "\"Apache-HttpClient/4.3.6 (java 1.5)\" ECDHE-RSA-AES128-SHA TLSv1"))
+                .toBlocking().single();
+
+        assertThat(event.toString(false)).contains(
+                "\"backend_processing_time\":1.212816,\"backend_status_code\":400,\"client_ip\":\"216.137.32.245\"",
+                "\"request_processing_time\":4.4E-5",
+                "\"useragent\":\"Apache-HttpClient/4.3.6 (java 1.5)\"");
+        assertThat(event.has("UNWANTED")).isFalse();
+        assertThat(event.hasTag(GrokFactory.ERROR_TAG)).isFalse();
+    }
+
+    @Test
+    public void testFirstMatchingPatternIsUsed() {
+        Grok<JsonEvent> grok = GrokFactory.create("message", Arrays.asList("%{INT:number}$", "%{WORD:word}"),
+                Collections.emptyMap(), true, GrokFactory.ERROR_TAG, false);
+
+        JsonEvent number = grok.parse(TEXT_TO_JSON.from("123")).toBlocking().single();
+        JsonEvent word = grok.parse(TEXT_TO_JSON.from("abc")).toBlocking().single();
+        JsonEvent none = grok.parse(TEXT_TO_JSON.from("!?")).toBlocking().single();
+
+        assertThat(number.valueAsString("number")).isEqualTo("123");
+        assertThat(number.has("word")).isFalse();
+        assertThat(word.valueAsString("word")).isEqualTo("abc");
+        assertThat(none.hasTag(GrokFactory.ERROR_TAG)).isTrue();
+
+        List<Grok.Counter> counters = grok.counters();
+        assertThat(counters.get(0).hits()).isEqualTo(1);
+        assertThat(counters.get(0).misses()).isEqualTo(2);
+        assertThat(counters.get(1).hits()).isEqualTo(1);
+        assertThat(counters.get(1).misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPatternsAreReorderedByHits() {
+        Grok<JsonEvent> grok = GrokFactory.create("message", Arrays.asList("%{INT:number}$", "%{WORD:word}"),
+                Collections.emptyMap(), true, GrokFactory.ERROR_TAG, true);
+
+        for (int i = 0; i < Grok.REORDER_INTERVAL; i++) {
+            grok.parse(TEXT_TO_JSON.from("abc")).toBlocking().single();
+        }
+        assertThat(grok.counters().get(0).pattern()).isEqualTo("%{WORD:word}");
+
+        JsonEvent number = grok.parse(TEXT_TO_JSON.from("123")).toBlocking().single();
+        assertThat(number.valueAsString("word")).isEqualTo("123");
+    }
+
+    @Test
+    public void testCatastrophicBacktrackingIsTaggedAsTimeout() {
+        Grok<JsonEvent> grok = GrokFactory.create("message", Collections.singletonList("^((a+)+)\\2$"),
+                Collections.emptyMap(), true, GrokFactory.ERROR_TAG, false, 50);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 26; i++) {
+            value.append('a');
+        }
+        value.append('!');
+
+        JsonEvent event = grok.parse(TEXT_TO_JSON.from(value.toString())).toBlocking().single();
+
+        assertThat(event.hasTag(GrokFactory.TIMEOUT_TAG)).isTrue();
+        assertThat(event.hasTag(GrokFactory.ERROR_TAG)).isFalse();
+        assertThat(grok.counters().get(0).timeouts()).isEqualTo(1);
+        assertThat(grok.parse(TEXT_TO_JSON.from("abc")).toBlocking().single().hasTag(GrokFactory.TIMEOUT_TAG))
+                .isFalse();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Sony Mobile Communications, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package lumbermill.internal.transformers;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequiredLiteralsTest {
+
+    @Test
+    public void testLiteralsInSequenceAreRequired() {
+        assertThat(RequiredLiterals.of("(\\S+) - - \\[(\\d+)\\] \"GET")).containsExactly(" - - [", "] \"GET");
+        assertThat(RequiredLiterals.of("(?<name>abc)\\d+def")).containsExactly("abc", "def");
+    }
+
+    @Test
+    public void testOptionalPartsAreNotRequired() {
+        assertThat(RequiredLiterals.of("abcd?e")).containsExactly("abc");
+        assertThat(RequiredLiterals.of("ab(?:cde)?fg")).containsExactly("ab", "fg");
+        assertThat(RequiredLiterals.of("ab(?:cde)*fg")).containsExactly("ab", "fg");
+        assertThat(RequiredLiterals.of("ab(?:cde){0,2}fg")).containsExactly("ab", "fg");
+        assertThat(RequiredLiterals.of("ab(?:cde)+fg")).containsExactly("cde", "ab", "fg");
+        assertThat(RequiredLiterals.of("(?:abc|def)xyz")).containsExactly("xyz");
+        assertThat(RequiredLiterals.of("abc|def")).isEmpty();
+        assertThat(RequiredLiterals.of("(?!abc)xyz(?<=yz)")).containsExactly("xyz");
+    }
+
+    @Test
+    public void testQuantifierAfterGroupIsNotLiteral() {
+        assertThat(RequiredLiterals.of("(?:a|b){0,2}")).isEmpty();
+        assertThat(RequiredLiterals.of("(a|b){2}")).isEmpty();
+        assertThat(RequiredLiterals.of("(?:a|b)*xyz")).containsExactly("xyz");
+        assertThat(RequiredLiterals.of("(?=ab)*cd")).containsExactly("cd");
+    }
+
+    @Test
+    public void testUnsupportedConstructsDisableFilter() {
+        assertThat(RequiredLiterals.of("(?i)abc")).isEmpty();
+        assertThat(RequiredLiterals.of("(?i:abc)")).isEmpty();
+        assertThat(RequiredLiterals.of("[abc")).isEmpty();
+    }
+
+    @Test
+    public void testEscapesAndClasses() {
+        assertThat(RequiredLiterals.of("a\\.b[xy]cd\\d+\\Qgh\\Eij\\p{Alpha}kl")).containsExactly("a.b", "cd", "ij", "kl");
+        assertThat(RequiredLiterals.of("[\\]\\[]ab[^]c]de")).containsExactly("ab", "de");
+    }
+
+    @Test
+    public void testMatchingValuesAreNeverRejected() {
+        String[][] cases = {
+                {"HTTP/(\\d\\.\\d)? (?:GET|POST) /x", "HTTP/ POST /x"},
+                {"a+bc*d", "aaabd"},
+                {"(?:ab)?cd(?:ef)+", "cdefef"},
+                {"\\[(?<ts>[^\\]]+)\\] \"(?:(\\w+) )?done\"", "[now] \"done\""},
+                {"(?:a|b){0,2}", ""},
+                {"(a|b){2}", "ab"},
+                {"(?:a|b)*xyz", "xyz"},
+                {"(?:GET|POST)+ /index", "GETPOST /index"},
+                {"(?=ab)+abc", "abc"}
+        };
+        for (String[] c : cases) {
+            assertThat(Pattern.compile(c[0]).matcher(c[1]).find()).isTrue();
+            assertThat(RequiredLiterals.containsAll(c[1], RequiredLiterals.of(c[0]))).as(c[0]).isTrue();
+        }
+    }
+}
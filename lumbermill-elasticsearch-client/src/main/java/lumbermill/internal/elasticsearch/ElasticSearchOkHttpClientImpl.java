@@ -31,6 +31,7 @@ import lumbermill.elasticsearch.FatalIndexException;
 import lumbermill.elasticsearch.IndexFailedException;
 import lumbermill.internal.MapWrap;
 import lumbermill.internal.StringTemplate;
+import okio.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
@@ -100,7 +101,12 @@ public class ElasticSearchOkHttpClientImpl {
 
     private final boolean indexIsPrefix;
 
-    private String timestampField = "@timestamp";
+    private static final DateTimeFormatter INDEX_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd");
+
+    /**
+     * Date part of the index name, taken from the timestamp field
+     */
+    private StringTemplate indexDate = StringTemplate.compile("{+yyyy.MM.dd}");
 
     private final URL url;
     private final String index;
@@ -131,10 +137,10 @@ public class ElasticSearchOkHttpClientImpl {
 
     /**
      * Change timestamp field if you are not using @timestamp. The correct fieldname is currently
-     * required in order to create correct timestamped indices.
+     * required in order to create correct timestamped indices. Nested fields are specified as [a][b].
      */
     public ElasticSearchOkHttpClientImpl withTimestampField(String field) {
-        this.timestampField = field;
+        this.indexDate = StringTemplate.compile("{" + field + ":yyyy.MM.dd}");
         return this;
     }
 
@@ -240,22 +246,22 @@ public class ElasticSearchOkHttpClientImpl {
     /**
      * Converts the events to a BulkApi request
      */
-    protected StringBuilder toBulkApiRequest(List<JsonEvent> batch) {
+    protected Buffer toBulkApiRequest(List<JsonEvent> batch) {
 
-        StringBuilder builder = new StringBuilder();
+        Buffer buffer = new Buffer();
 
         batch.stream().forEach((event ->
-                builder.append(indexRowWithDateAndType(event))
-                        .append("\n")
-                        .append(event.toString(false))
-                        .append("\n")));
-        return builder;
+                buffer.writeUtf8(indexRowWithDateAndType(event))
+                        .writeByte('\n')
+                        .write(event.raw())
+                        .writeByte('\n')));
+        return buffer;
     }
 
     private String indexRowWithDateAndType(JsonEvent event) {
 
-        Optional<String> formattedType = type.format(event);
-        if (!formattedType.isPresent()) {
+        String formattedType = type.render(event);
+        if (formattedType == null) {
             throw new IllegalStateException("Invalid value for type " + type.original());
         }
 
@@ -264,21 +270,15 @@ public class ElasticSearchOkHttpClientImpl {
 
         // Prepare for adding day to index for each event
         if (indexIsPrefix) {
-            LocalDate indexDate;
             // TODO: Not sure how to handle this... what should be the behaviour if the specified timestamp field
             //       does not exist
-            if (event.has(this.timestampField)) {
-                 indexDate = LocalDate.parse(event.valueAsString(this.timestampField).substring(0, 10),
-                        DateTimeFormatter.ISO_DATE);
-            } else {
-                indexDate = LocalDate.now();
-            }
+            String date = indexDate.render(event);
             data.put("_index",
-                    index + indexDate.format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+                    index + (date != null ? date : LocalDate.now().format(INDEX_DATE_FORMAT)));
         } else {
             data.put("_index", index);
         }
-        data.put("_type", formattedType.get());
+        data.put("_type", formattedType);
         objectNode.set("index", data);
 
         return objectNode.toString();
@@ -332,7 +332,7 @@ public class ElasticSearchOkHttpClientImpl {
             this.events = events;
             this.url = url;
             headers = MapWrap.of("host", url.getHost()).toMap();
-            payload = Optional.of(toBulkApiRequest(events).toString().getBytes());
+            payload = Optional.of(toBulkApiRequest(events).readByteArray());
         }
 
         @Override